@@ -0,0 +1,158 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmarks is a small, dependency-free benchmark harness for Knockout, NQueensSolver and ExpressionBuilder. Every
+ * benchmark is warmed up, then run repeatedly for a fixed amount of time, and reported as one line holding its
+ * throughput (ops/s), average time per op, bytes allocated per op on the benchmark thread, and how many garbage
+ * collections (and how much GC time) happened during measurement.
+ *
+ * The repository has no build file, so compile the files under test together with this one, e.g.:
+ *
+ *      javac Benchmarks.java Knockout.java NQueensSolver.java ExpressionBuilder.java
+ *      java -Xms2g -Xmx2g Benchmarks [knockout|nqueens|expression ...]
+ *
+ * With no arguments every suite runs. A fixed heap keeps runs comparable. Allocation is only counted on the thread
+ * that runs the benchmark, so work handed to a thread pool does not show up in bytes/op.
+ *
+ * @author Alex Meislich
+ */
+class Benchmarks {
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 3_000_000_000L;
+
+    //results are written here so the JIT can't throw the work away:
+    private static volatile Object sink;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        Set<String> suites = new HashSet<>(Arrays.asList(args));
+        boolean all = suites.isEmpty();
+        System.out.printf("%-45s %14s %14s %14s %8s %8s%n", "benchmark", "ops/s", "us/op", "bytes/op", "gcs",
+                "gc ms");
+        if (all || suites.contains("knockout")) {
+            knockout();
+        }
+        if (all || suites.contains("nqueens")) {
+            nQueens();
+        }
+        if (all || suites.contains("expression")) {
+            expressions();
+        }
+    }
+
+    /**
+     * Knockout over board sizes (the tiles 1 to size) and rolls, for a fresh search and for warm table lookups.
+     */
+    private static void knockout() {
+        int[] rolls = {4, 7, 10};
+        for (Knockout.Mode mode : new Knockout.Mode[]{Knockout.Mode.SEARCH, Knockout.Mode.MEMOIZED}) {
+            Knockout game = new Knockout(mode);
+            for (int size = 3; size <= 9; size += 2) {
+                List<Integer> board = new ArrayList<>();
+                for (int t = 1; t <= size; t++) {
+                    board.add(t);
+                }
+                for (int roll : rolls) {
+                    run("knockout " + mode + " size=" + size + " roll=" + roll,
+                            () -> sink = game.getExpectedValue(board, roll));
+                }
+            }
+        }
+    }
+
+    /**
+     * NQueensSolver.solveNQueens for n = 8 to 14. A new solver is made for every op, because a solver keeps adding
+     * to the same list of solutions.
+     */
+    private static void nQueens() {
+        for (int n = 8; n <= 14; n++) {
+            int size = n;
+            run("nqueens solveNQueens n=" + n, () -> sink = new NQueensSolver().solveNQueens(size));
+            run("nqueens solveNQueensBitboard n=" + n, () -> sink = new NQueensSolver().solveNQueensBitboard(size));
+        }
+    }
+
+    /**
+     * ExpressionBuilder.compute over 4 to 7 numbers, once with a target that can be reached and once with one that
+     * can't (EX 3 from ExpressionBuilder).
+     */
+    private static void expressions() {
+        Integer[] numbers = {37, 43, 61, 79, 119, 127, 197};
+        Expression answer = new ExpressionSearch().compute(Arrays.asList(numbers), 47000);
+        run("expression render", () -> sink = answer.toString());
+        for (int size = 4; size <= 7; size++) {
+            ArrayList<Integer> set = new ArrayList<>(Arrays.asList(numbers).subList(0, size));
+            // (43 + 37) - (79 - 61) == 62 only needs the first four numbers:
+            int reachable = 62;
+            int unreachable = 470000;
+            run("expression compute size=" + size + " reachable",
+                    () -> sink = new ExpressionBuilder().compute(set, reachable));
+            run("expression shortest size=" + size + " reachable",
+                    () -> sink = new ExpressionSearch().computeShortest(set, reachable));
+            run("expression compute size=" + size + " unreachable",
+                    () -> sink = new ExpressionBuilder().compute(set, unreachable));
+            run("expression search size=" + size + " unreachable",
+                    () -> sink = new ExpressionSearch().compute(set, unreachable));
+            run("expression reachable size=" + size + " range=[0, 999999]",
+                    () -> sink = new ExpressionTable(set).reachable(0, 999_999));
+            ExpressionCache cache = new ExpressionCache(1);
+            run("expression cached size=" + size + " unreachable",
+                    () -> sink = cache.compute(set, unreachable));
+            run("expression cached nearest size=" + size + " unreachable",
+                    () -> sink = cache.nearest(set, unreachable));
+            run("expression parallel search size=" + size + " unreachable",
+                    () -> sink = new ExpressionSearch(ForkJoinPool.commonPool()).compute(set, unreachable));
+        }
+    }
+
+    /**
+     * Warms an op up, then measures it and prints one line of results. Each phase runs the op at least once, so a slow
+     * op is still measured (just over fewer runs).
+     */
+    private static void run(String name, Runnable op) {
+        long end = System.nanoTime() + WARMUP_NANOS;
+        do {
+            op.run();
+        } while (System.nanoTime() < end);
+
+        long thread = Thread.currentThread().getId();
+        long gcs = gcCount();
+        long gcMillis = gcMillis();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long ops = 0;
+        long start = System.nanoTime();
+        end = start + MEASURE_NANOS;
+        long now;
+        do {
+            op.run();
+            ops++;
+            now = System.nanoTime();
+        } while (now < end);
+        long elapsed = now - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        System.out.printf("%-45s %14.1f %14.3f %14d %8d %8d%n", name, ops * 1e9 / elapsed, elapsed / 1e3 / ops,
+                bytes / ops, gcCount() - gcs, gcMillis() - gcMillis);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+
+/**
+ * The Expression class holds two integers, a mathematical symbol, the result of that symbol applied to the
+ * integers. It also temporarily holds an up to date list of still unused/newly combined integers from the
+ * original set. All Expressions also hold the Expression performed previous to their own. This way, any
+ * Expression which evaluates to the target value, can be traced back, step by step, through all the
+ * Expressions that facilitated it. To print an Expression, the chain is turned into an ExpressionTree, which works
+ * out which earlier Expression each integer came from.
+ */
+class Expression {
+    //the integers to be combined:
+    protected int a;
+    protected int b;
+
+    //the operation specifying how the integers will be combined:
+    protected String sym; //+ or - or * or /
+
+    //the previous Expression:
+    protected Expression prev = null;
+
+    //the evaluation of the two integers and the operation
+    protected int outcome;
+
+    //the list of usable integers available for further combining.
+    protected ArrayList<Integer> list;
+
+    //the tree this Expression was made from, if it was made from one (see ExpressionTree.toExpression):
+    ExpressionTree tree;
+
+    /**
+     * This is the constructor for an Expression object.
+     * @param a the first integer
+     * @param sym the operation ("+", "-", "*", or "/")
+     * @param b the second integer
+     * @param prev the previous Expression
+     * @param list the list of usable integers to be combined.
+     */
+    public Expression(int a, String sym, int b, Expression prev, ArrayList<Integer> list) {
+        this.a = a;
+        this.b = b;
+        this.sym = sym;
+        this.prev = prev;
+        //clone the list
+        this.list = new ArrayList<>(list);
+        this.outcome = this.evaluate();
+        //add the outcome to the new list
+        this.list.add(outcome);
+    }
+
+    /**
+     * Solve for the operation applied to the two integers.
+     * @return the evaluation of the operation applied to the two integers.
+     * @throws ArithmeticException if the result doesn't fit in an int.
+     */
+    public int evaluate() {
+        int outcome;
+
+        //do an operation based on what the sym variable is:
+        switch (sym) {
+            case "+":
+                outcome = Math.addExact(this.a, this.b);
+                break;
+            case "-":
+                if(this.b > this.a){
+                    int temp = this.a;
+                    this.a = this.b;
+                    this.b = temp;
+                }
+                outcome = Math.subtractExact(this.a, this.b);
+                break;
+            case "*":
+                outcome = Math.multiplyExact(this.a, this.b);
+                break;
+            case "/":
+                if (this.a == Integer.MIN_VALUE && this.b == -1) {
+                    throw new ArithmeticException("integer overflow");
+                }
+                outcome = this.a / this.b;
+                break;
+            default:// this case (hopefully) will never happen. If it does, everything breaks.
+                throw new RuntimeException("Something went horribly wrong in the 'evaluate' function.");
+        }
+        return outcome;
+    }
+
+    /**
+     * @return the chain of Expressions leading to this one, as an ExpressionTree (the one it was made from, if any).
+     */
+    public ExpressionTree toTree() {
+        return this.tree != null ? this.tree : ExpressionTree.of(this);
+    }
+
+    /**
+     * prints the whole expression.
+     * @return a whole mathematical expression as a String.
+     */
+    @Override
+    public String toString(){
+        return toTree().render(new StringBuilder()).append(" = ").append(this.outcome).toString();
+    }
+}
@@ -29,13 +29,13 @@ import java.util.Arrays;
  * EX 2:
  {37, 43, 61, 79, 119, 127, 197}  result: 47000
  POSSIBLE
- ((43 + 37) - (197 - 127)) * ((79 * 61) - 119) = 47000
+ (43 + 37 - (197 - 127)) * (79 * 61 - 119) = 47000
  *
  *
  * EX 3:
  {37, 43, 61, 79, 119, 127, 197}  result: 470000
  IMPOSSIBLE
- (((43 * 37) - (79 + 61)) * (197 + 127)) - 119 = 470005
+ (43 * 37 - (79 + 61)) * (197 + 127) - 119 = 470005
  *
  *
  * @author Alex Meislich
@@ -69,9 +69,28 @@ class ExpressionBuilder {
     }
 
     public Expression compute(ArrayList<Integer> list, int target){
+        this.closest = null;
         return this.computeHelper(list, target, null);
     }
 
+    /**
+     * @return the Expression from the last compute() call whose outcome came closest to the target (the answer itself
+     * when the target was reached), or null if no Expression was made.
+     */
+    public Expression getClosest() {
+        return this.closest;
+    }
+
+    /**
+     * Keeps exp as the closest Expression if it is nearer to the target than the closest one so far.
+     */
+    private void updateClosest(Expression exp, int target) {
+        if (exp != null && (this.closest == null
+                || Math.abs((long) exp.outcome - target) < Math.abs((long) this.closest.outcome - target))) {
+            this.closest = exp;
+        }
+    }
+
     /**
      * ComputeHelper(list, prevExp) takes in a list of usable integers and a previously created expression to combine all
      * possible pairings from the list using all possible operations. New expressions are created from these pairings
@@ -94,42 +113,57 @@ class ExpressionBuilder {
                 newList.remove(i);
                 newList.remove(j);
                 //make all the possible Expressions.
-                Expression plusExp = new Expression(first, "+", second, prevExp, newList, target, this.closest);
-                Expression timesExp = new Expression(first, "*", second, prevExp, newList, target, this.closest);
-                Expression minusExp = new Expression(first, "-", second, prevExp, newList, target, this.closest);
+                //an Expression whose result doesn't fit in an int is left out (null).
+                Expression plusExp = combine(first, "+", second, prevExp, newList);
+                Expression timesExp = combine(first, "*", second, prevExp, newList);
+                Expression minusExp = combine(first, "-", second, prevExp, newList);
                 Expression divExp = null;
                 //division is a little more complicated.
                 //we need to make sure that the quotient is an integer and that the denominator isn't zero.
                 if (second != 0 && first % second == 0) {
-                    divExp = new Expression(first, "/", second, prevExp, newList, target, this.closest);
+                    divExp = combine(first, "/", second, prevExp, newList);
                 }
                 else if (first != 0 && second % first == 0) {
-                    divExp = new Expression(second, "/", first, prevExp, newList, target, this.closest);
+                    divExp = combine(second, "/", first, prevExp, newList);
                 }
+                //remember whichever of them is closest to the target so far.
+                updateClosest(plusExp, target);
+                updateClosest(timesExp, target);
+                updateClosest(minusExp, target);
+                updateClosest(divExp, target);
                 //if we have reached the target, return the Expression. (base case)
-                if (plusExp.outcome == target) {
+                if (plusExp != null && plusExp.outcome == target) {
                     return plusExp;
                 }
-                if (timesExp.outcome == target) {
+                if (timesExp != null && timesExp.outcome == target) {
                     return timesExp;
                 }
-                if (minusExp.outcome == target) {
+                if (minusExp != null && minusExp.outcome == target) {
                     return minusExp;
                 }
-                if ((((double) first) / second) == target || (((double) second) / first) == target) {
+                if (divExp != null && divExp.outcome == target) {
                     return divExp;
                 }
                 //do recursive calls on all new Expressions and their lists. (recursive case)
                 //return any expression that results in a base case
-                Expression plusPath = computeHelper(plusExp.list, target, plusExp);
+                Expression plusPath = null;
+                if(plusExp != null) {
+                    plusPath = computeHelper(plusExp.list, target, plusExp);
+                }
                 if(plusPath != null){
                     return plusPath;
                 }
-                Expression timesPath = computeHelper(timesExp.list, target, timesExp);
+                Expression timesPath = null;
+                if(timesExp != null) {
+                    timesPath = computeHelper(timesExp.list, target, timesExp);
+                }
                 if(timesPath != null){
                     return timesPath;
                 }
-                Expression minusPath = computeHelper(minusExp.list, target, minusExp);
+                Expression minusPath = null;
+                if(minusExp != null) {
+                    minusPath = computeHelper(minusExp.list, target, minusExp);
+                }
                 if(minusPath != null){
                     return minusPath;
                 }
@@ -145,6 +179,17 @@ class ExpressionBuilder {
         return null; //if we were unable to find any suitable Expression, return null.
     }
 
+    /**
+     * Makes an Expression, or returns null if its result would overflow an int.
+     */
+    private static Expression combine(int a, String sym, int b, Expression prev, ArrayList<Integer> list) {
+        try {
+            return new Expression(a, sym, b, prev, list);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
     /**
      * Turns a 1d int array into a String
      * @param arr the array to be converted
@@ -160,144 +205,3 @@ class ExpressionBuilder {
         return str;
     }
 }
-
-/**
- * The Expression class holds two integers, a mathematical symbol, the result of that symbol applied to the
- * integers. It also temporarily holds an up to date list of still unused/newly combined integers from the
- * original set. All Expressions also hold the Expression performed previous to their own. This way, any
- * Expression which evaluates to the target value, can be traced back, step by step, through all the
- * Expressions that facilitated it. The last piece of information that Expressions can hold is two more
- * Expressions in String form (strA and strB). These two variable are necessary for the toString method.
- */
-class Expression {
-    //the integers to be combined:
-    protected int a;
-    protected int b;
-
-    //the operation specifying how the integers will be combined:
-    protected String sym; //+ or - or * or /
-
-    //the previous Expression:
-    protected Expression prev = null;
-
-    //the evaluation of the two integers and the operation
-    protected int outcome;
-
-    //the list of usable integers available for further combining.
-    protected ArrayList<Integer> list;
-
-    //the subExpression Strings.
-    protected String strA;
-    protected String strB;
-
-    /**
-     * This is the constructor for an Expression object.
-     * @param a the first integer
-     * @param sym the operation ("+", "-", "*", or "/")
-     * @param b the second integer
-     * @param prev the previous Expression
-     * @param list the list of usable integers to be combined.
-     */
-    public Expression(int a, String sym, int b, Expression prev, ArrayList<Integer> list, int target, Expression closest) {
-        this.a = a;
-        this.b = b;
-        this.sym = sym;
-        this.prev = prev;
-        //see if this is the closest we have gotten to the target value.
-        try {
-            if (Math.abs(this.evaluate() - target) < Math.abs(closest.evaluate() - target)) {
-                closest = this;
-            }
-            //if there isn't a previously closest value, then this expression is closest by default.
-        } catch (NullPointerException e) {
-            closest = this;
-        }
-        //clone the list
-        this.list = new ArrayList<>(list);
-        this.outcome = this.evaluate();
-        //add the outcome to the new list
-        this.list.add(outcome);
-        //for now, the two Strings will hold this.a and this.b in String format.
-        this.strA = Integer.toString(this.a);
-        this.strB = Integer.toString(this.b);
-    }
-
-    /**
-     * Solve for the operation applied to the two integers.
-     * @return the evaluation of the operation applied to the two integers.
-     */
-    public int evaluate() {
-        int outcome;
-
-        //do an operation based on what the sym variable is:
-        switch (sym) {
-            case "+":
-                outcome = this.a + this.b;
-                break;
-            case "-":
-                if(this.b > this.a){
-                    int temp = this.a;
-                    this.a = this.b;
-                    this.b = temp;
-                }
-                outcome = Math.abs(this.a - this.b);
-                break;
-            case "*":
-                outcome = this.a * this.b;
-                break;
-            case "/":
-                outcome = this.a / this.b;
-                break;
-            default:// this case (hopefully) will never happen. If it does, everything breaks.
-                throw new RuntimeException("Something went horribly wrong in the 'evaluate' function.");
-        }
-        return outcome;
-    }
-
-    private ArrayList<Expression> getSequence() {
-        return getSequenceHelper(this);
-    }
-
-    /**
-     * Find the sequence of evaluations that facilitated this one.
-     * @param exp the current expression
-     * @return an ArrayList of Expressions.
-     */
-    private ArrayList<Expression> getSequenceHelper(Expression exp) {
-        try {
-            ArrayList<Expression> temp = getSequenceHelper(exp.prev);
-            temp.add(exp);// add this expression to the ArrayList and return.
-            return temp;
-        } catch (NullPointerException e) {//base case. There is no previous expression
-            return new ArrayList<>(); // return a blank ArrayList.
-        }
-    }
-
-    /**
-     * prints the whole expression.
-     * @return a whole mathematical expression as a String.
-     */
-    @Override
-    public String toString(){
-        //get the sequence of previous expressions.
-        ArrayList<Expression> expList = this.getSequence();
-        Expression curr;
-        Expression compareToCurr;
-        // for each Expression, match its outcome to the a or b variable in another expression and
-        for(int i = 0; i < expList.size() - 1; i++){
-            curr = expList.get(i);
-            for(int j = i + 1; j < expList.size(); j++){
-                compareToCurr = expList.get(j);
-                if(curr.outcome == compareToCurr.a){
-                    compareToCurr.strA = "(" + curr.strA + " " + curr.sym + " " + curr.strB + ")";
-                    break;
-                }
-                if(curr.outcome == compareToCurr.b){
-                    compareToCurr.strB = "(" + curr.strA + " " + curr.sym + " " + curr.strB + ")";
-                    break;
-                }
-            }
-        }
-        return this.strA + " " + this.sym + " " + this.strB + " = " + this.outcome;
-    }
-}
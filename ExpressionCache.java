@@ -0,0 +1,181 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The ExpressionCache keeps the ExpressionTables of the number sets it has seen most recently, so a set that comes up
+ * again is answered from its table instead of being searched again. Sets are keyed by their numbers in sorted order,
+ * so {3, 1, 2} and {1, 2, 3} share an entry. Once the cache holds capacity sets, the least recently used one is
+ * dropped to make room.
+ *
+ * The cache can be shared between threads. A table is built outside the lock, so a slow build doesn't hold up
+ * lookups of other sets. The first thread to miss on a set puts a future for its table in the cache and builds it;
+ * any thread asking for the same set meanwhile waits for that build (and counts as a hit) instead of starting its
+ * own. If the build fails, the entry is dropped and every waiting thread gets the same exception.
+ *
+ * @author Alex Meislich
+ */
+class ExpressionCache {
+    private final int capacity;
+    private final int ceiling;
+    private final LinkedHashMap<Key, CompletableFuture<ExpressionTable>> tables;
+    private long hits;
+    private long misses;
+
+    public static void main(String[] args) {
+        ExpressionCache cache = new ExpressionCache(16);
+        int[] numbers = {37, 43, 61, 79, 119, 127, 197};
+        for (int target : new int[]{47000, 470000, 62}) {
+            long start = System.currentTimeMillis();
+            System.out.println(cache.compute(numbers, target) + "\n" + (System.currentTimeMillis() - start));
+        }
+        System.out.println(cache);
+    }
+
+    public ExpressionCache(int capacity) {
+        this(capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity The most number sets to keep.
+     * @param ceiling The ceiling every table is built with (see ExpressionTable).
+     */
+    public ExpressionCache(int capacity, int ceiling) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1 (got " + capacity + ")");
+        }
+        this.capacity = capacity;
+        this.ceiling = ceiling;
+        this.tables = new LinkedHashMap<Key, CompletableFuture<ExpressionTable>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<ExpressionTable>> eldest) {
+                return size() > ExpressionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return The table for the numbers, built now if it isn't cached.
+     */
+    public ExpressionTable get(int[] numbers) {
+        int[] sorted = numbers.clone();
+        Arrays.sort(sorted);
+        Key key = new Key(sorted);
+        CompletableFuture<ExpressionTable> future;
+        boolean build = false;
+        synchronized (this) {
+            future = this.tables.get(key);
+            if (future != null) {
+                this.hits++;
+            } else {
+                this.misses++;
+                future = new CompletableFuture<>();
+                this.tables.put(key, future);
+                build = true;
+            }
+        }
+        //the table is built (or waited for) outside the lock:
+        if (build) {
+            try {
+                future.complete(new ExpressionTable(sorted, this.ceiling));
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    this.tables.remove(key, future);
+                }
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return join(future);
+    }
+
+    /**
+     * Waits for a table that may still be being built by another thread.
+     *
+     * @throws RuntimeException (or Error) whatever the build threw.
+     */
+    private static ExpressionTable join(CompletableFuture<ExpressionTable> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public ExpressionTable get(List<Integer> numbers) {
+        return get(numbers.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * @return An expression equal to the target, or null if there is none (see ExpressionTable.find).
+     */
+    public Expression compute(int[] numbers, int target) {
+        return get(numbers).find(target);
+    }
+
+    public Expression compute(List<Integer> list, int target) {
+        return get(list).find(target);
+    }
+
+    /**
+     * @return An expression as close to the target as possible (see ExpressionTable.nearest).
+     */
+    public Expression nearest(int[] numbers, int target) {
+        return get(numbers).nearest(target);
+    }
+
+    public Expression nearest(List<Integer> list, int target) {
+        return get(list).nearest(target);
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized int size() {
+        return this.tables.size();
+    }
+
+    public synchronized void clear() {
+        this.tables.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ExpressionCache[" + this.tables.size() + "/" + this.capacity + " sets, " + this.hits + " hits, "
+                + this.misses + " misses]";
+    }
+
+    /**
+     * A sorted number set, compared by its numbers.
+     */
+    private static final class Key {
+        private final int[] numbers;
+        private final int hash;
+
+        private Key(int[] numbers) {
+            this.numbers = numbers;
+            this.hash = Arrays.hashCode(numbers);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(this.numbers, ((Key) o).numbers);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
@@ -0,0 +1,575 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ExpressionSearch is the same depth-first search as ExpressionBuilder.computeHelper, with the same rules, but it
+ * doesn't allocate while it searches. The usable values live in one int[] that is changed in place: combining the
+ * values at i and j writes the result over j and moves the last value into i, and undoing the step puts both
+ * operands back. The steps taken so far are kept as operands and byte opcodes on a stack indexed by depth, and
+ * Expression objects are only made for the steps of the final answer.
+ *
+ * Every value the search makes is compared with the best one so far, so a search that can't reach the target still
+ * ends with the nearest expression it saw (see computeNearest). The search stops as soon as the best value is close
+ * enough.
+ *
+ * An ExpressionSearch made with a ForkJoinPool splits the search by its first step: every pair of numbers and
+ * operation becomes its own task with its own copy of the values. The tasks share a stop flag, which the first task
+ * to get within tolerance of the target sets to cancel the rest, and the best answer, which is only ever replaced by
+ * a closer one (compare-and-set, no locks). Which of several equally close answers is returned can then depend on
+ * timing.
+ *
+ * Branches that can't lead anywhere new are pruned (the answers found are the same, only the work is not):
+ *   - a pair of values is only tried once per level, however many copies of those values there are;
+ *   - a step that multiplies or divides by 1 (or, when no number is negative, whose result is 0 or which uses 0) is
+ *     checked against the target but not searched further, since everything below it can also be made without it.
+ *     With negative numbers about, 0 isn't a no-op: 0 - x == |x|;
+ *   - of the operations on a pair that give the same result, only the first is searched further;
+ *   - a set of values (as a sorted multiset, with at least MEMO_MIN_VALUES values) that has already been searched
+ *     at least as many steps deep isn't searched again. Each search (each task, in parallel) keeps its own memo.
+ *
+ * Every result is worked out as a long and dropped (neither checked nor searched) if its size is over the ceiling, so
+ * no value ever wraps around. The ceiling is Integer.MAX_VALUE unless a smaller one is given, which also keeps big
+ * inputs from blowing the search up.
+ *
+ * @author Alex Meislich
+ */
+class ExpressionSearch {
+    static final byte PLUS = 0;
+    static final byte TIMES = 1;
+    static final byte MINUS = 2;
+    static final byte DIVIDE = 3;
+    static final String[] SYMBOLS = {"+", "*", "-", "/"};
+    //smaller sets of values are cheaper to search again than to look up:
+    static final int MEMO_MIN_VALUES = 4;
+
+    //null when searching on the calling thread:
+    private final ForkJoinPool pool;
+    //results bigger than this (in size) are dropped:
+    private final int ceiling;
+
+    public static void main(String[] args) {
+        int[] numbers = {37, 43, 61, 79, 119, 127, 197};
+        long start = System.currentTimeMillis();
+        System.out.println(new ExpressionSearch().compute(numbers, 47000) + "\n" + (System.currentTimeMillis() - start));
+        start = System.currentTimeMillis();
+        System.out.println(new ExpressionSearch().computeShortest(numbers, 47000) + "\n"
+                + (System.currentTimeMillis() - start));
+        start = System.currentTimeMillis();
+        System.out.println(new ExpressionSearch().computeNearest(numbers, 470000) + "\n"
+                + (System.currentTimeMillis() - start));
+        start = System.currentTimeMillis();
+        System.out.println(new ExpressionSearch(ForkJoinPool.commonPool()).computeNearest(numbers, 470000) + "\n"
+                + (System.currentTimeMillis() - start));
+    }
+
+    public ExpressionSearch() {
+        this(null);
+    }
+
+    /**
+     * @param pool The pool to search in, or null to search on the calling thread.
+     */
+    public ExpressionSearch(ForkJoinPool pool) {
+        this(pool, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param pool The pool to search in, or null to search on the calling thread.
+     * @param ceiling The largest size of value a step may make.
+     */
+    public ExpressionSearch(ForkJoinPool pool, int ceiling) {
+        if (ceiling < 0) {
+            throw new IllegalArgumentException("The ceiling can't be negative (got " + ceiling + ")");
+        }
+        this.pool = pool;
+        this.ceiling = ceiling;
+    }
+
+    public Expression compute(List<Integer> list, int target) {
+        return compute(list.stream().mapToInt(Integer::intValue).toArray(), target);
+    }
+
+    /**
+     * @param numbers The usable integers.
+     * @param target The value to make.
+     * @return An expression equal to the target, or null if there is none.
+     */
+    public Expression compute(int[] numbers, int target) {
+        Best best = run(numbers, target, 0);
+        return best != null && best.distance == 0 ? best.toExpression() : null;
+    }
+
+    /**
+     * @param numbers The usable integers.
+     * @param target The value to make.
+     * @return An expression equal to the target if there is one, otherwise one whose value is as close to the target
+     * as possible (null if there are fewer than two numbers).
+     */
+    public Expression computeNearest(int[] numbers, int target) {
+        return computeNearest(numbers, target, 0);
+    }
+
+    /**
+     * Like computeNearest(numbers, target), but stops at the first expression within tolerance of the target.
+     */
+    public Expression computeNearest(int[] numbers, int target, long tolerance) {
+        Best best = run(numbers, target, tolerance);
+        return best == null ? null : best.toExpression();
+    }
+
+    /**
+     * Searches for answers of 1 step, then 2 steps and so on (on the calling thread), so the answer found uses as few
+     * operations as possible. Each round only checks results at its last step, since shorter ones were checked by the
+     * rounds before, and the memo remembers how many steps below each set of values have been searched, so a set that
+     * was searched to the end in one round isn't searched again in the next.
+     *
+     * @param numbers The usable integers.
+     * @param target The value to make.
+     * @return An expression equal to the target with the fewest steps, or null if there is none.
+     */
+    public Expression computeShortest(int[] numbers, int target) {
+        Search search = new Search(numbers, target, 0, this.ceiling, new AtomicBoolean(), null);
+        for (int steps = 1; steps < numbers.length; steps++) {
+            search.maxSteps = steps;
+            if (search.search(numbers.length, 0)) {
+                return search.best().toExpression();
+            }
+        }
+        return null;
+    }
+
+    public Expression computeShortest(List<Integer> list, int target) {
+        return computeShortest(list.stream().mapToInt(Integer::intValue).toArray(), target);
+    }
+
+    /**
+     * @return the best answer found, or null if there are fewer than two numbers.
+     */
+    private Best run(int[] numbers, int target, long tolerance) {
+        AtomicBoolean stop = new AtomicBoolean();
+        if (this.pool == null || numbers.length < 3) {
+            Search search = new Search(numbers, target, tolerance, this.ceiling, stop, null);
+            search.search(numbers.length, 0);
+            return search.best();
+        }
+        AtomicReference<Best> shared = new AtomicReference<>();
+        Search first = new Search(numbers, target, tolerance, this.ceiling, stop, shared);
+        List<FirstStepTask> tasks = new ArrayList<>();
+        int pairs = 0;
+        for (int i = 0; i < numbers.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (!first.firstTry(0, pairs, numbers[i], numbers[j])) {
+                    continue;
+                }
+                pairs++;
+                if (first.checkPair(0, numbers[i], numbers[j])) {
+                    return shared.get();
+                }
+                for (byte op = PLUS; op <= DIVIDE; op++) {
+                    if (worthSearching(op, numbers[i], numbers[j], this.ceiling, first.negatives)) {
+                        Search search = new Search(numbers, target, tolerance, this.ceiling, stop, shared);
+                        tasks.add(new FirstStepTask(search, i, j, op));
+                    }
+                }
+            }
+        }
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        return shared.get();
+    }
+
+    /**
+     * Searches everything below one first step.
+     */
+    @SuppressWarnings("serial")
+    private static class FirstStepTask extends RecursiveAction {
+        private final Search search;
+        private final int i;
+        private final int j;
+        private final byte op;
+
+        private FirstStepTask(Search search, int i, int j, byte op) {
+            this.search = search;
+            this.i = i;
+            this.j = j;
+            this.op = op;
+        }
+
+        @Override
+        protected void compute() {
+            int[] v = this.search.values;
+            int a = v[this.i];
+            int b = v[this.j];
+            this.search.record(0, this.op, a, b);
+            v[this.i] = v[v.length - 1];
+            v[this.j] = (int) apply(this.op, a, b);
+            this.search.search(v.length - 1, 1);
+        }
+    }
+
+    /**
+     * An answer: its steps, and how far its value is from the target.
+     */
+    private static class Best {
+        private final int[] a;
+        private final int[] b;
+        private final byte[] op;
+        private final long distance;
+
+        private Best(int[] a, int[] b, byte[] op, int steps, long distance) {
+            this.a = Arrays.copyOf(a, steps);
+            this.b = Arrays.copyOf(b, steps);
+            this.op = Arrays.copyOf(op, steps);
+            this.distance = distance;
+        }
+
+        /**
+         * Builds the chain of Expressions for the steps.
+         */
+        private Expression toExpression() {
+            Expression prev = null;
+            for (int d = 0; d < this.op.length; d++) {
+                prev = new Expression(this.a[d], SYMBOLS[this.op[d]], this.b[d], prev, new ArrayList<>());
+            }
+            return prev;
+        }
+    }
+
+    /**
+     * The state of one search: the values, and the steps taken to get to them.
+     */
+    private static class Search {
+        private final int[] values;
+        private final int target;
+        //step d combined stepA[d] and stepB[d] with stepOp[d]:
+        private final int[] stepA;
+        private final int[] stepB;
+        private final byte[] stepOp;
+        //the steps to the value closest to the target so far:
+        private final int[] bestA;
+        private final int[] bestB;
+        private final byte[] bestOp;
+        private int bestSteps;
+        private long bestDistance = Long.MAX_VALUE;
+        //the pairs of values tried so far at each depth (see pairKey):
+        private final long[][] pairsTried;
+        //the sets of values already searched (and how deep), and room to sort the current one:
+        private final MultisetTable visited = new MultisetTable();
+        private final int[] sorted;
+        //the most steps an answer may have (when deepening, only answers with exactly this many are checked):
+        private int maxSteps = Integer.MAX_VALUE;
+        //the search stops once bestDistance is this small, or once stop is set:
+        private final long tolerance;
+        private final AtomicBoolean stop;
+        //results bigger than this (in size) are dropped:
+        private final int ceiling;
+        //whether any number is negative (otherwise no value ever is):
+        private final boolean negatives;
+        //the best answer of every task, when searching in parallel:
+        private final AtomicReference<Best> shared;
+
+        private Search(int[] numbers, int target, long tolerance, int ceiling, AtomicBoolean stop,
+                       AtomicReference<Best> shared) {
+            int steps = Math.max(1, numbers.length);
+            this.values = numbers.clone();
+            this.target = target;
+            this.tolerance = tolerance;
+            this.ceiling = ceiling;
+            this.negatives = Arrays.stream(numbers).anyMatch(number -> number < 0);
+            this.stop = stop;
+            this.shared = shared;
+            this.stepA = new int[steps];
+            this.stepB = new int[steps];
+            this.stepOp = new byte[steps];
+            this.bestA = new int[steps];
+            this.bestB = new int[steps];
+            this.bestOp = new byte[steps];
+            this.pairsTried = new long[steps][steps * (steps - 1) / 2];
+            this.sorted = new int[steps];
+        }
+
+        /**
+         * Tries every pair of the first count values with every operation, like computeHelper: all four results of a
+         * pair are checked against the target before any of them is searched further.
+         *
+         * @return true if the search can stop (the best value is within tolerance of the target).
+         */
+        private boolean search(int count, int depth) {
+            if (this.stop.get()) {
+                return true;
+            }
+            int[] v = this.values;
+            if (count >= MEMO_MIN_VALUES) {
+                System.arraycopy(v, 0, this.sorted, 0, count);
+                Arrays.sort(this.sorted, 0, count);
+                if (!this.visited.visit(this.sorted, count, Math.min(count - 1, this.maxSteps - depth))) {
+                    return false;
+                }
+            }
+            boolean deepening = this.maxSteps != Integer.MAX_VALUE;
+            boolean last = depth + 1 >= this.maxSteps;
+            int pairs = 0;
+            for (int i = 0; i < count; i++) {
+                for (int j = 0; j < i; j++) {
+                    int a = v[i];
+                    int b = v[j];
+                    if (!firstTry(depth, pairs, a, b)) {
+                        continue;
+                    }
+                    pairs++;
+                    if ((last || !deepening) && checkPair(depth, a, b)) {
+                        return true;
+                    }
+                    if (last) {
+                        continue;
+                    }
+                    for (byte op = PLUS; op <= DIVIDE; op++) {
+                        if (!worthSearching(op, a, b, this.ceiling, this.negatives)) {
+                            continue;
+                        }
+                        record(depth, op, a, b);
+                        v[i] = v[count - 1];
+                        v[j] = (int) apply(op, a, b);
+                        boolean hit = search(count - 1, depth + 1);
+                        v[i] = a;
+                        v[j] = b;
+                        if (hit) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Remembers the pair of values as tried at this depth.
+         *
+         * @param pairs how many pairs have been tried at this depth so far.
+         * @return false if an equal pair was already tried at this depth.
+         */
+        private boolean firstTry(int depth, int pairs, int a, int b) {
+            long key = pairKey(a, b);
+            long[] tried = this.pairsTried[depth];
+            for (int k = 0; k < pairs; k++) {
+                if (tried[k] == key) {
+                    return false;
+                }
+            }
+            tried[pairs] = key;
+            return true;
+        }
+
+        /**
+         * Checks the four results of a pair against the best value so far.
+         *
+         * @return true if one of them is within tolerance of the target.
+         */
+        private boolean checkPair(int depth, int a, int b) {
+            for (byte op = PLUS; op <= DIVIDE; op++) {
+                if (!valid(op, a, b, this.ceiling)) {
+                    continue;
+                }
+                long distance = Math.abs(apply(op, a, b) - this.target);
+                if (distance < this.bestDistance) {
+                    record(depth, op, a, b);
+                    keepBest(depth + 1, distance);
+                    if (distance <= this.tolerance) {
+                        this.stop.set(true);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Pushes a step, putting the operands in the order they are written (larger first for "-", numerator first
+         * for "/").
+         */
+        private void record(int depth, byte op, int a, int b) {
+            boolean swap = (op == MINUS && b > a) || (op == DIVIDE && !(b != 0 && a % b == 0));
+            this.stepOp[depth] = op;
+            this.stepA[depth] = swap ? b : a;
+            this.stepB[depth] = swap ? a : b;
+        }
+
+        /**
+         * Copies the first steps on the stack as the new best answer. In parallel, the answer is offered to the shared
+         * best instead, and bestDistance becomes the distance of whatever is best across all tasks.
+         */
+        private void keepBest(int steps, long distance) {
+            if (this.shared != null) {
+                Best candidate = new Best(this.stepA, this.stepB, this.stepOp, steps, distance);
+                Best current = this.shared.get();
+                while ((current == null || distance < current.distance)
+                        && !this.shared.compareAndSet(current, candidate)) {
+                    current = this.shared.get();
+                }
+                current = this.shared.get();
+                this.bestDistance = current.distance;
+                return;
+            }
+            System.arraycopy(this.stepA, 0, this.bestA, 0, steps);
+            System.arraycopy(this.stepB, 0, this.bestB, 0, steps);
+            System.arraycopy(this.stepOp, 0, this.bestOp, 0, steps);
+            this.bestSteps = steps;
+            this.bestDistance = distance;
+        }
+
+        /**
+         * @return the best answer (null if there isn't one).
+         */
+        private Best best() {
+            return this.bestSteps == 0 ? null : new Best(this.bestA, this.bestB, this.bestOp, this.bestSteps,
+                    this.bestDistance);
+        }
+    }
+
+    /**
+     * @return whether the step is valid and needs searching below (see the pruning rules above).
+     */
+    static boolean worthSearching(byte op, int a, int b, int ceiling, boolean negatives) {
+        if (!valid(op, a, b, ceiling) || ((op == TIMES || op == DIVIDE) && (a == 1 || b == 1))
+                || (!negatives && (a == 0 || b == 0))) {
+            return false;
+        }
+        long result = apply(op, a, b);
+        if (result == 0 && !negatives) {
+            return false;
+        }
+        for (byte earlier = PLUS; earlier < op; earlier++) {
+            if (valid(earlier, a, b, ceiling) && apply(earlier, a, b) == result) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the same key for (a, b) and (b, a).
+     */
+    static long pairKey(int a, int b) {
+        return a < b ? ((long) a << 32) | (b & 0xFFFFFFFFL) : ((long) b << 32) | (a & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A hash table from sorted int multisets to how many steps below them have been searched, all kept in one int[]:
+     * each entry is its size, its steps and its values. The table holds 1 + the offset of each entry, or 0 for an empty
+     * slot.
+     */
+    private static class MultisetTable {
+        private int[] table = new int[1 << 10];
+        private int[] entries = new int[1 << 12];
+        private int used;
+        private int size;
+
+        /**
+         * Records that the multiset is about to be searched to the given number of steps.
+         *
+         * @return false if it has already been searched at least that far.
+         */
+        private boolean visit(int[] values, int count, int steps) {
+            if (2 * (this.size + 1) > this.table.length) {
+                grow();
+            }
+            int mask = this.table.length - 1;
+            int slot = hash(values, 0, count) & mask;
+            while (this.table[slot] != 0) {
+                int offset = this.table[slot] - 1;
+                if (matches(offset, values, count)) {
+                    if (this.entries[offset + 1] >= steps) {
+                        return false;
+                    }
+                    this.entries[offset + 1] = steps;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (this.used + count + 2 > this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries, Math.max(2 * this.entries.length, this.used + count + 2));
+            }
+            this.entries[this.used] = count;
+            this.entries[this.used + 1] = steps;
+            System.arraycopy(values, 0, this.entries, this.used + 2, count);
+            this.table[slot] = this.used + 1;
+            this.used += count + 2;
+            this.size++;
+            return true;
+        }
+
+        private boolean matches(int offset, int[] values, int count) {
+            if (this.entries[offset] != count) {
+                return false;
+            }
+            for (int k = 0; k < count; k++) {
+                if (this.entries[offset + 2 + k] != values[k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            int[] table = new int[2 * this.table.length];
+            int mask = table.length - 1;
+            for (int entry : this.table) {
+                if (entry != 0) {
+                    int slot = hash(this.entries, entry + 1, this.entries[entry - 1]) & mask;
+                    while (table[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = entry;
+                }
+            }
+            this.table = table;
+        }
+
+        private static int hash(int[] values, int from, int count) {
+            int h = count;
+            for (int k = from; k < from + count; k++) {
+                h = 31 * h + values[k];
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Division is only allowed when one value divides the other.
+     */
+    static boolean valid(byte op, int a, int b) {
+        return op != DIVIDE || (b != 0 && a % b == 0) || (a != 0 && b % a == 0);
+    }
+
+    /**
+     * @return whether the operation is allowed and its result is no bigger (in size) than the ceiling.
+     */
+    static boolean valid(byte op, int a, int b, int ceiling) {
+        return valid(op, a, b) && Math.abs(apply(op, a, b)) <= ceiling;
+    }
+
+    /**
+     * Applies an operation the way Expression.evaluate does (the larger value minus the smaller one, and whichever
+     * division is exact), but as a long: the result of two ints can't overflow one.
+     */
+    static long apply(byte op, int a, int b) {
+        switch (op) {
+            case PLUS:
+                return (long) a + b;
+            case TIMES:
+                return (long) a * b;
+            case MINUS:
+                return Math.abs((long) a - b);
+            default:
+                return b != 0 && a % b == 0 ? (long) a / b : (long) b / a;
+        }
+    }
+}
@@ -0,0 +1,746 @@
+import java.util.*;
+
+/**
+ * The ExpressionTable solves the ExpressionBuilder problem bottom-up instead of depth-first. Every subset of the input
+ * numbers is a bitmask, and for every subset the table holds the set of values that can be made from exactly those
+ * numbers, each with a back-pointer to how it was made: which two disjoint halves of the subset it came from, the
+ * value taken from each half, and the operation that combined them. A subset's values are built by combining every
+ * pair of disjoint halves whose values are already known, so each distinct intermediate value of each subset is only
+ * ever combined once, no matter how many pairing orders lead to it.
+ *
+ * Once the table is built, exact and nearest-target queries are just lookups, and the winning expression is rebuilt
+ * from the back-pointers as a chain of Expressions that prints the same way as ExpressionBuilder's answers. The rules
+ * are ExpressionBuilder's: subtraction takes the larger value minus the smaller one, division must be exact, and
+ * an answer combines at least two of the numbers.
+ *
+ * Results are worked out as longs, and any whose size is over the ceiling (Integer.MAX_VALUE unless a smaller one is
+ * given) is left out of the table, so no value ever wraps around.
+ *
+ * When one set of numbers is checked against many targets, reachable(low, high) works out every value in a range
+ * that can be made from them once, after which each target is a lookup (see Reachable).
+ *
+ * @author Alex Meislich
+ */
+class ExpressionTable {
+    private final int[] numbers;
+    //results bigger than this (in size) are left out:
+    private final int ceiling;
+    //values[mask] == everything that can be made from the numbers in mask:
+    private final ValueSet[] values;
+    //the widest range reachable() will take, since it keeps one int per value in the range:
+    static final int MAX_RANGE = 1 << 24;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--check")) {
+            int failures = 0;
+            for (int ceiling : new int[]{60, 150, Integer.MAX_VALUE}) {
+                failures += crossCheck(new Random(ceiling), 300, ceiling);
+            }
+            System.out.println(failures + " mismatches");
+            System.exit(failures == 0 ? 0 : 1);
+        }
+        int[] numbers = {37, 43, 61, 79, 119, 127, 197};
+        long start = System.currentTimeMillis();
+        ExpressionTable table = new ExpressionTable(numbers);
+        System.out.println("built in " + (System.currentTimeMillis() - start) + " ms");
+        System.out.println(table.find(47000));
+        System.out.println(table.find(470000) + "\n" + table.nearest(470000));
+        // 1000 * 1000 * 1000 * 1000 would wrap around to -727379968 as an int:
+        System.out.println(new ExpressionTable(new int[]{1000, 1000, 1000, 1000}).find(-727379968));
+        start = System.currentTimeMillis();
+        Reachable reachable = table.reachable(0, 999_999);
+        System.out.println(reachable.size() + " values in [0, 999999] found in " + (System.currentTimeMillis() - start)
+                + " ms\n" + reachable.find(470000) + "\n" + reachable.nearest(470000));
+    }
+
+    /**
+     * Compares nearest() and find() (directly and through reachable()) with ExpressionSearch.computeNearest, which
+     * tries every expression, on random small sets of numbers (some of them negative) and targets. The first target of
+     * every set is 0, which 0 * b makes whenever a set holds a 0.
+     *
+     * @return the number of queries where the two disagree on how close the target can be got (or on whether find()
+     * reaches it), each one printed.
+     */
+    static int crossCheck(Random random, int sets, int ceiling) {
+        ExpressionSearch search = new ExpressionSearch(null, ceiling);
+        int failures = 0;
+        for (int set = 0; set < sets; set++) {
+            int[] numbers = new int[2 + random.nextInt(4)];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = random.nextInt(25) - (set % 2 == 0 ? 0 : 10);
+            }
+            ExpressionTable table = new ExpressionTable(numbers, ceiling);
+            Reachable reachable = table.reachable(-100, 100);
+            for (int query = 0; query < 10; query++) {
+                int target = query == 0 ? 0 : random.nextInt(500) - 250;
+                long expected = distance(search.computeNearest(numbers, target), target);
+                long found = expected == 0 ? 0 : -1;
+                if (distance(table.nearest(target), target) != expected
+                        || distance(reachable.nearest(target), target) != expected
+                        || distance(table.find(target), target) != found
+                        || (Math.abs(target) <= 100 && distance(reachable.find(target), target) != found)) {
+                    System.out.println("ceiling " + ceiling + ", " + Arrays.toString(numbers) + ", target " + target
+                            + ": " + table.nearest(target) + " (found " + table.find(target) + ") but "
+                            + search.computeNearest(numbers, target));
+                    failures++;
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static long distance(Expression exp, int target) {
+        return exp == null ? -1 : Math.abs((long) exp.outcome - target);
+    }
+
+    public ExpressionTable(int[] numbers) {
+        this(numbers, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds the table for a set of numbers.
+     *
+     * @param numbers The usable integers (at most 10 of them).
+     * @param ceiling The largest size of value a step may make.
+     */
+    public ExpressionTable(int[] numbers, int ceiling) {
+        if (numbers.length > 10) {
+            throw new IllegalArgumentException("At most 10 numbers are supported (got " + numbers.length + ")");
+        }
+        if (ceiling < 0) {
+            throw new IllegalArgumentException("The ceiling can't be negative (got " + ceiling + ")");
+        }
+        this.numbers = numbers.clone();
+        this.ceiling = ceiling;
+        this.values = new ValueSet[1 << numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            this.values[1 << i] = new ValueSet(4);
+            this.values[1 << i].addLeaf(numbers[i]);
+        }
+        // every proper subset of a mask is numerically smaller, so it is always built first. The set of all the
+        // numbers is the largest by far and queries can be answered from its halves, so it isn't built here:
+        for (int mask = 1; mask < this.values.length - 1; mask++) {
+            if (Integer.bitCount(mask) > 1) {
+                this.values[mask] = combine(mask);
+            }
+        }
+        // everything a query needs is worked out here, so a table never changes once built and can be shared
+        // between threads (it is published through the final fields):
+        for (int mask = 1; mask < this.values.length - 1; mask++) {
+            this.values[mask].sort();
+        }
+    }
+
+    public ExpressionTable(List<Integer> numbers) {
+        this(numbers.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Combines every split of the mask into two disjoint, non-empty halves.
+     */
+    private ValueSet combine(int mask) {
+        ValueSet set = new ValueSet(16);
+        for (int left = (mask - 1) & mask; left != 0; left = (left - 1) & mask) {
+            int right = mask ^ left;
+            // each unordered split only needs to be looked at once:
+            if (left < right) {
+                continue;
+            }
+            ValueSet lefts = this.values[left];
+            ValueSet rights = this.values[right];
+            for (int i = 0; i < lefts.keys.length; i++) {
+                if (lefts.meta[i] == 0) {
+                    continue;
+                }
+                int a = lefts.keys[i];
+                for (int j = 0; j < rights.keys.length; j++) {
+                    if (rights.meta[j] == 0) {
+                        continue;
+                    }
+                    combine(set, left, a, right, rights.keys[j], -this.ceiling, this.ceiling);
+                }
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Adds every result of a (from left) and b (from right) that lies between low and high to the set.
+     */
+    private static void combine(ValueSet set, int left, int a, int right, int b, long low, long high) {
+        add(set, (long) a + b, left, a, b, ExpressionSearch.PLUS, low, high);
+        add(set, (long) a * b, left, a, b, ExpressionSearch.TIMES, low, high);
+        if (a >= b) {
+            add(set, (long) a - b, left, a, b, ExpressionSearch.MINUS, low, high);
+        } else {
+            add(set, (long) b - a, right, b, a, ExpressionSearch.MINUS, low, high);
+        }
+        if (b != 0 && a % b == 0) {
+            add(set, (long) a / b, left, a, b, ExpressionSearch.DIVIDE, low, high);
+        } else if (a != 0 && b % a == 0) {
+            add(set, (long) b / a, right, b, a, ExpressionSearch.DIVIDE, low, high);
+        }
+    }
+
+    private static void add(ValueSet set, long value, int left, int a, int b, int op, long low, long high) {
+        if (value >= low && value <= high) {
+            set.add((int) value, left, a, b, op);
+        }
+    }
+
+    /**
+     * Works out every value between low and high (inclusive) that can be made from the numbers, with the fewest
+     * numbers it can be made from. The set of all the numbers is only searched for values in the range: for each
+     * value a of the smaller half, only the values of the other half that can give a result in the range are
+     * combined with it.
+     *
+     * @return the reachable values, which answer any number of queries.
+     */
+    public Reachable reachable(int low, int high) {
+        if (low > high || (long) high - low >= MAX_RANGE) {
+            throw new IllegalArgumentException("The range [" + low + ", " + high + "] must hold between 1 and "
+                    + MAX_RANGE + " values");
+        }
+        int full = this.values.length - 1;
+        //masks[value - low] == the smallest mask that makes the value, or 0 if none does:
+        int[] masks = new int[high - low + 1];
+        for (int mask = 1; mask < full; mask++) {
+            if (Integer.bitCount(mask) < 2) {
+                continue;
+            }
+            ValueSet set = this.values[mask];
+            for (int i = 0; i < set.keys.length; i++) {
+                int value = set.keys[i];
+                if (set.meta[i] != 0 && value >= low && value <= high && (masks[value - low] == 0
+                        || Integer.bitCount(mask) < Integer.bitCount(masks[value - low]))) {
+                    masks[value - low] = mask;
+                }
+            }
+        }
+        ValueSet whole = new ValueSet(16);
+        if (this.numbers.length >= 2) {
+            long bottom = Math.max(low, -this.ceiling);
+            long top = Math.min(high, this.ceiling);
+            // without negative numbers every value is at least 0:
+            boolean negatives = false;
+            for (int number : this.numbers) {
+                negatives |= number < 0;
+            }
+            for (int left = (full - 1) & full; left != 0; left = (left - 1) & full) {
+                ValueSet lefts = this.values[left];
+                ValueSet others = this.values[full ^ left];
+                if (lefts.size > others.size || (lefts.size == others.size && left < (full ^ left))) {
+                    continue;
+                }
+                int[] rights = others.sorted();
+                for (int i = 0; i < lefts.keys.length; i++) {
+                    if (lefts.meta[i] == 0) {
+                        continue;
+                    }
+                    long a = lefts.keys[i];
+                    if (negatives || a == 0) {
+                        combineRange(whole, left, a, full ^ left, rights, Long.MIN_VALUE, Long.MAX_VALUE, bottom, top);
+                        continue;
+                    }
+                    // with no negative values, only these b can give a + b, a - b, b - a, a * b, a / b or b / a in
+                    // the range:
+                    combineRange(whole, left, a, full ^ left, rights, bottom - a, top - a, bottom, top);
+                    combineRange(whole, left, a, full ^ left, rights, a - top, a - bottom, bottom, top);
+                    combineRange(whole, left, a, full ^ left, rights, a + bottom, a + top, bottom, top);
+                    combineRange(whole, left, a, full ^ left, rights, Math.floorDiv(bottom, a), top / a, bottom, top);
+                    combineRange(whole, left, a, full ^ left, rights, top > 0 ? a / top : a, bottom > 0 ? a / bottom : a,
+                            bottom, top);
+                    combineRange(whole, left, a, full ^ left, rights, a * bottom, a * top, bottom, top);
+                }
+            }
+        }
+        for (int i = 0; i < whole.keys.length; i++) {
+            if (whole.meta[i] != 0 && masks[whole.keys[i] - low] == 0) {
+                masks[whole.keys[i] - low] = full;
+            }
+        }
+        return new Reachable(low, masks, whole);
+    }
+
+    /**
+     * Combines x with every value in sorted between bLow and bHigh (inclusive), keeping the results between low and
+     * high.
+     */
+    private static void combineRange(ValueSet set, int xMask, long x, int yMask, int[] sorted, long bLow, long bHigh,
+                                     long low, long high) {
+        int idx = Arrays.binarySearch(sorted, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bLow)));
+        for (int k = idx >= 0 ? idx : -idx - 1; k < sorted.length && sorted[k] <= bHigh; k++) {
+            combine(set, xMask, (int) x, yMask, sorted[k], low, high);
+        }
+    }
+
+    /**
+     * @param target The value to make.
+     * @return An expression equal to the target that uses as few numbers as possible, or null if there is none.
+     */
+    public Expression find(int target) {
+        int best = -1;
+        for (int mask = 1; mask < this.values.length - 1; mask++) {
+            if (Integer.bitCount(mask) > 1 && this.values[mask].contains(target)
+                    && (best == -1 || Integer.bitCount(mask) < Integer.bitCount(best))) {
+                best = mask;
+            }
+        }
+        if (best != -1) {
+            return rebuild(this.values[best], best, target);
+        }
+        if (this.numbers.length < 2 || Math.abs((long) target) > this.ceiling) {
+            return null;
+        }
+        // try every way of making the target from two halves of the whole set, looking up partners for the values
+        // of the smaller half in the larger one:
+        Split split = new Split(target, this.ceiling);
+        int full = this.values.length - 1;
+        for (int left = (full - 1) & full; left != 0; left = (left - 1) & full) {
+            ValueSet lefts = this.values[left];
+            ValueSet rights = this.values[full ^ left];
+            if (lefts.size > rights.size || (lefts.size == rights.size && left < (full ^ left))) {
+                continue;
+            }
+            for (int i = 0; i < lefts.keys.length; i++) {
+                if (lefts.meta[i] == 0) {
+                    continue;
+                }
+                long a = lefts.keys[i];
+                if (a == 0 && target == 0 && rights.size > 0) {
+                    // 0 * b (or 0 / b) is 0 whatever b is, so any value from the other half will do:
+                    split.consider(left, 0, full ^ left, rights.sorted()[0]);
+                    return rebuild(split);
+                }
+                long[] partners = {target - a, a - target, a + target, a != 0 && target % a == 0 ? target / a : -1,
+                        target != 0 && a % target == 0 ? a / target : -1, a * target};
+                for (long b : partners) {
+                    if (b == (int) b && rights.contains((int) b)) {
+                        split.consider(left, (int) a, full ^ left, (int) b);
+                        if (split.distance == 0) {
+                            return rebuild(split);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param target The value to get close to.
+     * @return An expression whose value is as close to the target as possible (the target itself when it can be
+     * made), or null if there are fewer than two numbers.
+     */
+    public Expression nearest(int target) {
+        Expression exact = find(target);
+        if (exact != null || this.numbers.length < 2) {
+            return exact;
+        }
+        int bestMask = -1;
+        int bestValue = 0;
+        long bestDistance = Long.MAX_VALUE;
+        for (int mask = 1; mask < this.values.length - 1; mask++) {
+            if (Integer.bitCount(mask) < 2) {
+                continue;
+            }
+            int[] sorted = this.values[mask].sorted();
+            int idx = Arrays.binarySearch(sorted, target);
+            int above = idx >= 0 ? idx : -idx - 1;
+            for (int k = above - 1; k <= above; k++) {
+                if (k >= 0 && k < sorted.length && Math.abs((long) sorted[k] - target) < bestDistance) {
+                    bestDistance = Math.abs((long) sorted[k] - target);
+                    bestMask = mask;
+                    bestValue = sorted[k];
+                }
+            }
+        }
+
+        // now see if any combination of two halves of the whole set gets closer. For each value a on one side, only
+        // the values b on the other side that could beat the best distance so far are looked at:
+        Split split = new Split(target, this.ceiling);
+        split.distance = bestDistance;
+        int full = this.values.length - 1;
+        for (int left = (full - 1) & full; left != 0; left = (left - 1) & full) {
+            ValueSet lefts = this.values[left];
+            ValueSet others = this.values[full ^ left];
+            if (lefts.size > others.size || (lefts.size == others.size && left < (full ^ left))) {
+                continue;
+            }
+            int[] rights = others.sorted();
+            for (int i = 0; i < lefts.keys.length; i++) {
+                if (lefts.meta[i] == 0) {
+                    continue;
+                }
+                long a = lefts.keys[i];
+                long c = this.ceiling;
+                // each b looked for is kept to the values that keep that operation's result within the ceiling, so a
+                // wanted b whose result is too big gives way to the nearest one that fits.
+                // a + b, a - b and b - a (which is never below 0, so a negative target is best met by b == a):
+                long difference = Math.max(target, 0);
+                split.considerNear(left, a, full ^ left, rights, target - a, -c - a, c - a);
+                split.considerNear(left, a, full ^ left, rights, a - difference, a - c, a + c);
+                split.considerNear(left, a, full ^ left, rights, a + difference, a - c, a + c);
+                // a * b (the nearest b on either side of target / a):
+                if (a != 0) {
+                    long limit = c / Math.abs(a);
+                    split.considerNear(left, a, full ^ left, rights, Math.floorDiv(target, a), -limit, limit);
+                    split.considerNear(left, a, full ^ left, rights, Math.floorDiv(target, a) + 1, -limit, limit);
+                } else if (rights.length > 0) {
+                    split.consider(left, 0, full ^ left, rights[0]);
+                }
+                // a / b and b / a, which only exist when the division is exact (and are never bigger than a or b, so
+                // never over the ceiling):
+                if (split.distance > 0 && a != 0) {
+                    split.considerQuotients(left, a, full ^ left, rights);
+                }
+            }
+        }
+        if (split.value != null && split.distance < bestDistance) {
+            return rebuild(split);
+        }
+        return bestMask == -1 ? null : rebuild(this.values[bestMask], bestMask, bestValue);
+    }
+
+    /**
+     * Turns a Split of the whole set into Expressions.
+     */
+    private Expression rebuild(Split split) {
+        ExpressionTree tree = new ExpressionTree(2 * this.numbers.length);
+        int a = rebuild(tree, this.values[split.leftMask], split.leftMask, split.a);
+        int b = rebuild(tree, this.values[split.rightMask], split.rightMask, split.b);
+        tree.combine(split.op, a, b);
+        return tree.toExpression();
+    }
+
+    /**
+     * Turns the back-pointers for a value of the mask (whose values are in set) into Expressions.
+     *
+     * @return The Expression for the value, or null if the value is one of the input numbers.
+     */
+    private Expression rebuild(ValueSet set, int mask, int value) {
+        ExpressionTree tree = new ExpressionTree(2 * Integer.bitCount(mask));
+        rebuild(tree, set, mask, value);
+        return tree.toExpression();
+    }
+
+    /**
+     * Follows the back-pointers for a value of the mask (whose values are in set), adding the operands' nodes to the
+     * tree before the value's own.
+     *
+     * @return The index of the value's node.
+     */
+    private int rebuild(ExpressionTree tree, ValueSet set, int mask, int value) {
+        int slot = set.find(value);
+        int meta = set.meta[slot];
+        if (meta == ValueSet.LEAF) {
+            return tree.leaf(value);
+        }
+        int left = meta >>> 3;
+        int a = rebuild(tree, this.values[left], left, set.as[slot]);
+        int b = rebuild(tree, this.values[mask ^ left], mask ^ left, set.bs[slot]);
+        return tree.combine((byte) ((meta & 7) - 2), a, b);
+    }
+
+    /**
+     * Every value in a range that can be made from the numbers, each with the fewest numbers it can be made from.
+     * Checking a value is a lookup in an array indexed by the value, and the nearest reachable value is a binary
+     * search.
+     */
+    class Reachable {
+        private final int low;
+        private final int[] masks;
+        //the values made from all the numbers (only those in the range):
+        private final ValueSet whole;
+        private final int[] sorted;
+
+        private Reachable(int low, int[] masks, ValueSet whole) {
+            this.low = low;
+            this.masks = masks;
+            this.whole = whole;
+            int count = 0;
+            for (int mask : masks) {
+                if (mask != 0) {
+                    count++;
+                }
+            }
+            this.sorted = new int[count];
+            count = 0;
+            for (int i = 0; i < masks.length; i++) {
+                if (masks[i] != 0) {
+                    this.sorted[count++] = low + i;
+                }
+            }
+        }
+
+        public boolean contains(int value) {
+            long index = (long) value - this.low;
+            return index >= 0 && index < this.masks.length && this.masks[(int) index] != 0;
+        }
+
+        /**
+         * @return An expression equal to the value that uses as few numbers as possible, or null if the value isn't
+         * reachable (or isn't in the range).
+         */
+        public Expression find(int value) {
+            if (!contains(value)) {
+                return null;
+            }
+            int mask = this.masks[value - this.low];
+            int full = ExpressionTable.this.values.length - 1;
+            return rebuild(mask == full ? this.whole : ExpressionTable.this.values[mask], mask, value);
+        }
+
+        /**
+         * @return An expression whose value is as close to the target as possible. Targets outside the range, or so
+         * close to its ends that a value outside it could be nearer, are answered by ExpressionTable.nearest.
+         */
+        public Expression nearest(int target) {
+            if (this.sorted.length > 0 && target >= this.low && target <= this.low + this.masks.length - 1) {
+                int idx = Arrays.binarySearch(this.sorted, target);
+                int above = idx >= 0 ? idx : -idx - 1;
+                long best = Long.MAX_VALUE;
+                int value = 0;
+                for (int k = above - 1; k <= above; k++) {
+                    if (k >= 0 && k < this.sorted.length && Math.abs((long) this.sorted[k] - target) < best) {
+                        best = Math.abs((long) this.sorted[k] - target);
+                        value = this.sorted[k];
+                    }
+                }
+                // any value outside the range is at least this far away:
+                long outside = Math.min((long) target - this.low + 1, (long) this.low + this.masks.length - target);
+                if (best <= outside) {
+                    return find(value);
+                }
+            }
+            return ExpressionTable.this.nearest(target);
+        }
+
+        /**
+         * @return how many values in the range are reachable.
+         */
+        public int size() {
+            return this.sorted.length;
+        }
+
+        /**
+         * @return the reachable values in increasing order.
+         */
+        public int[] values() {
+            return this.sorted.clone();
+        }
+    }
+
+    /**
+     * The best way found so far to combine a value from one half of the whole set with a value from the other half.
+     * a is always the operand written first (the larger one for "-", the numerator for "/").
+     */
+    private static class Split {
+        private final int target;
+        private final int ceiling;
+        private long distance = Long.MAX_VALUE;
+        private Long value;
+        private int leftMask, a, rightMask, b;
+        private byte op;
+
+        private Split(int target, int ceiling) {
+            this.target = target;
+            this.ceiling = ceiling;
+        }
+
+        /**
+         * Tries every operation on x (from xMask) and y (from yMask), following the same rules as combine().
+         */
+        private void consider(int xMask, int x, int yMask, int y) {
+            offer(xMask, x, yMask, y, ExpressionSearch.PLUS, (long) x + y);
+            offer(xMask, x, yMask, y, ExpressionSearch.TIMES, (long) x * y);
+            if (x >= y) {
+                offer(xMask, x, yMask, y, ExpressionSearch.MINUS, (long) x - y);
+            } else {
+                offer(yMask, y, xMask, x, ExpressionSearch.MINUS, (long) y - x);
+            }
+            if (y != 0 && x % y == 0) {
+                offer(xMask, x, yMask, y, ExpressionSearch.DIVIDE, (long) x / y);
+            } else if (x != 0 && y % x == 0) {
+                offer(yMask, y, xMask, x, ExpressionSearch.DIVIDE, (long) y / x);
+            }
+        }
+
+        private void offer(int aMask, int a, int bMask, int b, byte op, long value) {
+            long distance = Math.abs(value - this.target);
+            if (distance < this.distance && Math.abs(value) <= this.ceiling) {
+                this.distance = distance;
+                this.value = value;
+                this.leftMask = aMask;
+                this.a = a;
+                this.rightMask = bMask;
+                this.b = b;
+                this.op = op;
+            }
+        }
+
+        /**
+         * Considers the values in sorted between low and high (inclusive) that are just below and just above the
+         * wanted one.
+         */
+        private void considerNear(int xMask, long x, int yMask, int[] sorted, long wanted, long low, long high) {
+            if (low > high) {
+                return;
+            }
+            wanted = Math.max(low, Math.min(high, wanted));
+            int idx = Arrays.binarySearch(sorted, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, wanted)));
+            int above = idx >= 0 ? idx : -idx - 1;
+            if (above > 0 && sorted[above - 1] >= low) {
+                consider(xMask, (int) x, yMask, sorted[above - 1]);
+            }
+            if (above < sorted.length && sorted[above] <= high) {
+                consider(xMask, (int) x, yMask, sorted[above]);
+            }
+        }
+
+        /**
+         * Considers every value b in sorted for which x / b or b / x could be closer to the target than the best so
+         * far (x != 0).
+         */
+        private void considerQuotients(int xMask, long x, int yMask, int[] sorted) {
+            double low = this.target - (double) this.distance;
+            double high = this.target + (double) this.distance;
+            // b divides x, so x / b is a whole number other than 0, and b == x / (x / b):
+            if (high >= 1) {
+                considerDivisors(xMask, x, yMask, sorted, Math.max(low, 1), high);
+            }
+            if (low <= -1) {
+                considerDivisors(xMask, x, yMask, sorted, low, Math.min(high, -1));
+            }
+            // b / x between low and high means b is between x * low and x * high:
+            considerRange(xMask, x, yMask, sorted, Math.min(x * low, x * high), Math.max(x * low, x * high));
+        }
+
+        /**
+         * Considers every b in sorted for which x / b could be between low and high, which have the same sign.
+         */
+        private void considerDivisors(int xMask, long x, int yMask, int[] sorted, double low, double high) {
+            considerRange(xMask, x, yMask, sorted, Math.min(x / low, x / high), Math.max(x / low, x / high));
+        }
+
+        /**
+         * Considers every value in sorted between low and high (inclusive).
+         */
+        private void considerRange(int xMask, long x, int yMask, int[] sorted, double low, double high) {
+            int idx = Arrays.binarySearch(sorted, (int) Math.max(Integer.MIN_VALUE, Math.floor(low)));
+            for (int k = idx >= 0 ? idx : -idx - 1; k < sorted.length && sorted[k] <= high; k++) {
+                consider(xMask, (int) x, yMask, sorted[k]);
+            }
+        }
+    }
+
+    /**
+     * An open-addressing hash set of ints, where every value also keeps the back-pointer it was first made with.
+     * meta == 0 marks an empty slot, LEAF an input number, and otherwise (left mask << 3) | (operation + 2).
+     */
+    private static class ValueSet {
+        private static final int LEAF = 1;
+        private int[] keys;
+        private int[] as;
+        private int[] bs;
+        private int[] meta;
+        private int size;
+        private int[] sorted;
+
+        private ValueSet(int capacity) {
+            this.keys = new int[capacity];
+            this.as = new int[capacity];
+            this.bs = new int[capacity];
+            this.meta = new int[capacity];
+        }
+
+        private void addLeaf(int value) {
+            int slot = slot(value);
+            if (this.meta[slot] == 0) {
+                this.keys[slot] = value;
+                this.meta[slot] = LEAF;
+                this.size++;
+            }
+        }
+
+        private void add(int value, int left, int a, int b, int op) {
+            if (2 * (this.size + 1) > this.keys.length) {
+                grow();
+            }
+            int slot = slot(value);
+            if (this.meta[slot] == 0) {
+                this.keys[slot] = value;
+                this.as[slot] = a;
+                this.bs[slot] = b;
+                this.meta[slot] = (left << 3) | (op + 2);
+                this.size++;
+            }
+        }
+
+        /**
+         * Works out the values in increasing order, once the set is complete.
+         */
+        private void sort() {
+            int[] sorted = new int[this.size];
+            int n = 0;
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.meta[i] != 0) {
+                    sorted[n++] = this.keys[i];
+                }
+            }
+            Arrays.sort(sorted);
+            this.sorted = sorted;
+        }
+
+        /**
+         * @return the values in increasing order (see sort()).
+         */
+        private int[] sorted() {
+            return this.sorted;
+        }
+
+        private boolean contains(int value) {
+            return this.meta[slot(value)] != 0;
+        }
+
+        /**
+         * @return the slot holding the value.
+         */
+        private int find(int value) {
+            return slot(value);
+        }
+
+        /**
+         * @return the slot holding the value, or the empty slot where it would go.
+         */
+        private int slot(int value) {
+            int mask = this.keys.length - 1;
+            int hash = value * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (this.meta[slot] != 0 && this.keys[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = this.keys;
+            int[] oldAs = this.as;
+            int[] oldBs = this.bs;
+            int[] oldMeta = this.meta;
+            this.keys = new int[oldKeys.length * 2];
+            this.as = new int[oldKeys.length * 2];
+            this.bs = new int[oldKeys.length * 2];
+            this.meta = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldMeta[i] != 0) {
+                    int slot = slot(oldKeys[i]);
+                    this.keys[slot] = oldKeys[i];
+                    this.as[slot] = oldAs[i];
+                    this.bs[slot] = oldBs[i];
+                    this.meta[slot] = oldMeta[i];
+                }
+            }
+        }
+    }
+}
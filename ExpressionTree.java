@@ -0,0 +1,220 @@
+import java.util.*;
+
+/**
+ * The ExpressionTree is a compact form of a worked-out expression: a list of nodes, each either one of the input
+ * numbers (a leaf) or an operation on two earlier nodes, given by their indices. The last node is the whole
+ * expression. Nodes are only ever added, so an index always points back, and several nodes could share an operand.
+ *
+ * An Expression chain only records the values each step combined, not which earlier step made them. of() works that
+ * out by consumption: each operand is matched to the most recent earlier step with that value whose result hasn't
+ * been used yet, and is otherwise an input number. Because no step is used twice, the tree always uses each step (and
+ * so each input number) at most once and has the chain's value, even when several values are equal.
+ *
+ * ExpressionTable builds its answers straight into a tree from its back-pointers, and toExpression() turns a tree
+ * into the chain of Expressions that is handed back.
+ *
+ * render() writes the expression in one pass, with only the parentheses that are needed: around an operand that
+ * binds more loosely than its operation, and around the right operand of "-" or "/" when it binds equally loosely.
+ *
+ * @author Alex Meislich
+ */
+class ExpressionTree {
+    //the operations are ExpressionSearch's:
+    static final byte LEAF = -1;
+
+    //node i is ops[i] applied to nodes left[i] and right[i] (or, for a LEAF, the number values[i]):
+    private byte[] ops;
+    private int[] left;
+    private int[] right;
+    private int[] values;
+    private int size;
+
+    public static void main(String[] args) {
+        ExpressionTree tree = new ExpressionTree(4);
+        int sum = tree.combine(ExpressionSearch.PLUS, tree.leaf(2), tree.leaf(2));
+        tree.combine(ExpressionSearch.MINUS, tree.leaf(9), tree.combine(ExpressionSearch.MINUS, tree.leaf(7), sum));
+        System.out.println(tree + " = " + tree.getValue());
+    }
+
+    public ExpressionTree(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.ops = new byte[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.values = new int[capacity];
+    }
+
+    /**
+     * Builds the tree for the chain of Expressions ending at last (see above).
+     */
+    static ExpressionTree of(Expression last) {
+        int steps = 0;
+        for (Expression exp = last; exp != null; exp = exp.prev) {
+            steps++;
+        }
+        Expression[] chain = new Expression[steps];
+        for (Expression exp = last; exp != null; exp = exp.prev) {
+            chain[--steps] = exp;
+        }
+        ExpressionTree tree = new ExpressionTree(3 * chain.length);
+        //stepNodes[s] == the node of step s, or -1 once its result has been used:
+        int[] stepNodes = new int[chain.length];
+        for (int s = 0; s < chain.length; s++) {
+            int a = tree.operand(chain[s].a, stepNodes, s);
+            int b = tree.operand(chain[s].b, stepNodes, s);
+            stepNodes[s] = tree.add(opOf(chain[s].sym), a, b, chain[s].outcome);
+        }
+        return tree;
+    }
+
+    /**
+     * @return the chain of Expressions for the tree, one per operation in the order they were added, or null if it has
+     * none. The last Expression keeps the tree, so printing it doesn't work the tree out again.
+     */
+    Expression toExpression() {
+        Expression prev = null;
+        for (int node = 0; node < this.size; node++) {
+            if (this.ops[node] != LEAF) {
+                prev = new Expression(this.values[this.left[node]], ExpressionSearch.SYMBOLS[this.ops[node]],
+                        this.values[this.right[node]], prev, new ArrayList<>());
+            }
+        }
+        if (prev != null) {
+            prev.tree = this;
+        }
+        return prev;
+    }
+
+    /**
+     * @return the node of the most recent unused step before step s with the value (using it up), or a new leaf.
+     */
+    private int operand(int value, int[] stepNodes, int s) {
+        for (int t = s - 1; t >= 0; t--) {
+            if (stepNodes[t] != -1 && this.values[stepNodes[t]] == value) {
+                int node = stepNodes[t];
+                stepNodes[t] = -1;
+                return node;
+            }
+        }
+        return leaf(value);
+    }
+
+    static byte opOf(String sym) {
+        switch (sym) {
+            case "+":
+                return ExpressionSearch.PLUS;
+            case "*":
+                return ExpressionSearch.TIMES;
+            case "-":
+                return ExpressionSearch.MINUS;
+            case "/":
+                return ExpressionSearch.DIVIDE;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + sym);
+        }
+    }
+
+    /**
+     * @return the index of a new leaf holding the number.
+     */
+    public int leaf(int value) {
+        return add(LEAF, -1, -1, value);
+    }
+
+    /**
+     * @return the index of a new node applying op to nodes a and b, with a written first.
+     */
+    public int combine(byte op, int a, int b) {
+        if (op < ExpressionSearch.PLUS || op > ExpressionSearch.DIVIDE || a < 0 || a >= this.size || b < 0 || b >= this.size) {
+            throw new IllegalArgumentException("Can't combine nodes " + a + " and " + b + " with operation " + op);
+        }
+        int x = this.values[a];
+        int y = this.values[b];
+        switch (op) {
+            case ExpressionSearch.PLUS:
+                return add(op, a, b, x + y);
+            case ExpressionSearch.TIMES:
+                return add(op, a, b, x * y);
+            case ExpressionSearch.MINUS:
+                return add(op, a, b, x - y);
+            default:
+                return add(op, a, b, x / y);
+        }
+    }
+
+    private int add(byte op, int a, int b, int value) {
+        if (this.size == this.ops.length) {
+            int capacity = 2 * this.size;
+            this.ops = Arrays.copyOf(this.ops, capacity);
+            this.left = Arrays.copyOf(this.left, capacity);
+            this.right = Arrays.copyOf(this.right, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        this.ops[this.size] = op;
+        this.left[this.size] = a;
+        this.right[this.size] = b;
+        this.values[this.size] = value;
+        return this.size++;
+    }
+
+    /**
+     * @return the value of the whole expression (the last node).
+     */
+    public int getValue() {
+        if (this.size == 0) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return this.values[this.size - 1];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Writes the whole expression (the last node) to the builder.
+     */
+    public StringBuilder render(StringBuilder sb) {
+        if (this.size > 0) {
+            render(sb, this.size - 1);
+        }
+        return sb;
+    }
+
+    private void render(StringBuilder sb, int node) {
+        byte op = this.ops[node];
+        if (op == LEAF) {
+            sb.append(this.values[node]);
+            return;
+        }
+        renderOperand(sb, this.left[node], precedence(op) > precedence(this.ops[this.left[node]]));
+        sb.append(' ').append(ExpressionSearch.SYMBOLS[op]).append(' ');
+        int b = this.right[node];
+        renderOperand(sb, b, precedence(op) > precedence(this.ops[b])
+                || ((op == ExpressionSearch.MINUS || op == ExpressionSearch.DIVIDE) && precedence(op) == precedence(this.ops[b])));
+    }
+
+    private void renderOperand(StringBuilder sb, int node, boolean parentheses) {
+        // a negative number is bracketed too, so "-" never ends up next to another operation:
+        parentheses |= this.ops[node] == LEAF && this.values[node] < 0;
+        if (parentheses) {
+            sb.append('(');
+        }
+        render(sb, node);
+        if (parentheses) {
+            sb.append(')');
+        }
+    }
+
+    /**
+     * @return how tightly the operation binds (leaves the most tightly of all).
+     */
+    private static int precedence(byte op) {
+        return op == LEAF ? 3 : op == ExpressionSearch.TIMES || op == ExpressionSearch.DIVIDE ? 2 : 1;
+    }
+
+    @Override
+    public String toString() {
+        return render(new StringBuilder()).toString();
+    }
+}
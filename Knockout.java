@@ -1,13 +1,24 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
 
 /**
  * Knockout is a made up game from division one problem K of the 2018 Intercollegiate Programming Contest. You can see
  * the problem-set here: http://www.acmicpc-pacnw.org/ProblemSet/2018/div1.pdf
  *
- * This Knockout class is specially designed to simulate a game of "Knockout". Crate an instance of this class and use
- * it's singular public method "getExpectedValue()" to input the game-state and the most recent roll. This class is
- * designed to help a Knockout player make the most educated removal selections depending on what variation of the game
- * is being played. NOTE: Although I was inspired by the original problem from ICPC, I did not follow the input/output
+ * This Knockout class is specially designed to simulate a game of "Knockout". Create an instance of this class (its
+ * constructors take the Mode to solve with, and for PARALLEL the ForkJoinPool to use) and call "getExpectedValue()"
+ * with the game-state and the most recent roll, or "answerQueries()" to answer a whole stream of such queries at once.
+ * This class is designed to help a Knockout player make the most educated removal selections depending on what
+ * variation of the game is being played (KnockoutEngine plays variants with other tiles and dice). NOTE: Although I was inspired by the original problem from ICPC, I did not follow the input/output
  * directions exactly.
  *
  * @author Alex Meislich
@@ -17,93 +28,479 @@ class Knockout {
     private final double[] probKey = {0, 0, 1, 2, 3, 4, 5, 6, 5, 4, 3, 2, 1};
     private final int permutations = 36; 
 
-    public static void main(String[] args) {
+    //boards are also kept as 9-bit masks where bit (t - 1) is set while tile t is still up:
+    static final int TILES = 9;
+    static final int BOARDS = 1 << TILES;
+    private static final int[] tileSums = new int[BOARDS];
+    private static final int[] scores = new int[BOARDS];
+    //removalOptions[mask][roll] holds every set of tiles on the board that adds up to the roll, as masks:
+    private static final int[][][] removalOptions = new int[BOARDS][13][];
+    static {
+        for (int mask = 1; mask < BOARDS; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            tileSums[mask] = tileSums[mask & (mask - 1)] + low + 1;
+        }
+        for (int mask = 1; mask < BOARDS; mask++) {
+            int high = 31 - Integer.numberOfLeadingZeros(mask);
+            scores[mask] = scores[mask & ~(1 << high)] * 10 + high + 1;
+        }
+        int[] counts = new int[13];
+        for (int mask = 0; mask < BOARDS; mask++) {
+            Arrays.fill(counts, 0);
+            for (int rem = mask; rem != 0; rem = (rem - 1) & mask) {
+                if (tileSums[rem] <= 12) {
+                    counts[tileSums[rem]]++;
+                }
+            }
+            for (int roll = 0; roll <= 12; roll++) {
+                removalOptions[mask][roll] = new int[counts[roll]];
+            }
+            for (int rem = mask; rem != 0; rem = (rem - 1) & mask) {
+                int sum = tileSums[rem];
+                if (sum <= 12) {
+                    removalOptions[mask][sum][--counts[sum]] = rem;
+                }
+            }
+        }
+    }
+
+    //boards with this many tiles or fewer are solved on the calling thread in PARALLEL mode:
+    private static final int PARALLEL_CUTOFF = 5;
+
+    private final Mode mode;
+    private Board[] memo;
+    //the memo shared by every task in PARALLEL mode:
+    private final AtomicReferenceArray<Board> sharedMemo = new AtomicReferenceArray<>(BOARDS);
+    private final ForkJoinPool pool;
+
+    /**
+     * SEARCH walks the game tree from scratch on every call. MEMOIZED solves all 512 boards once (on the first call)
+     * and answers every later call with a table lookup. PARALLEL solves only the boards reachable from the query, with
+     * the successors of large boards evaluated as fork-join tasks, and keeps them for later calls. EXACT is MEMOIZED
+     * with every expected value kept as an exact fraction (see EXACT_DENOMINATOR), so results are bit-identical from
+     * run to run and can be compared exactly.
+     */
+    enum Mode { SEARCH, MEMOIZED, PARALLEL, EXACT }
+
+    //a board with k tiles has an expected value that is a whole number of 36^-k, so every expected value is a whole
+    //number of 36^-TILES. EXACT mode keeps the numerators over this denominator:
+    static final BigInteger EXACT_DENOMINATOR = BigInteger.valueOf(36).pow(TILES);
+    private static final BigDecimal EXACT_DIVISOR = new BigDecimal(EXACT_DENOMINATOR);
+    private Board[] exactMemo;
+
+    public Knockout() {
+        this(Mode.SEARCH);
+    }
+
+    public Knockout(Mode mode) {
+        this(mode, ForkJoinPool.commonPool());
+    }
+
+    public Knockout(Mode mode, ForkJoinPool pool) {
+        this.mode = mode;
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // java Knockout --batch [file]: answer every query in the file (or stdin) and stream the answers to stdout
+            try (BufferedReader in = args.length > 1 ? Files.newBufferedReader(Paths.get(args[1]))
+                    : new BufferedReader(new InputStreamReader(System.in));
+                 Writer out = new BufferedWriter(new OutputStreamWriter(System.out))) {
+                new Knockout(Mode.MEMOIZED).answerQueries(in, out);
+            }
+            return;
+        }
         LinkedList<Integer> currState = new LinkedList<>(Arrays.asList(1,2,3,4,9));
         Knockout myGame = new Knockout();
         long start = System.currentTimeMillis();
         System.out.println(myGame.getExpectedValue(currState, 4) + "\n" + (System.currentTimeMillis() - start));
+
+        Knockout memoGame = new Knockout(Mode.MEMOIZED);
+        start = System.currentTimeMillis();
+        System.out.println(memoGame.getExpectedValue(currState, 4) + "\n" + (System.currentTimeMillis() - start));
+
+        Knockout exactGame = new Knockout(Mode.EXACT);
+        start = System.currentTimeMillis();
+        System.out.println(exactGame.getExpectedValue(currState, 4) + "\n" + (System.currentTimeMillis() - start));
+
+        Knockout parallelGame = new Knockout(Mode.PARALLEL);
+        start = System.currentTimeMillis();
+        System.out.println(parallelGame.getExpectedValue(currState, 4) + "\n" + (System.currentTimeMillis() - start));
     }
 
     public Result getExpectedValue(List<Integer> currState, int roll){
-        return getExpectedValueHelper(currState, roll, false);
-    }
-
-
-    private Result getExpectedValueHelper(List<Integer> currState, int lastRolled, boolean gameOver) {
-        Result expectedValues = new Result(0,0);
-        if(gameOver){
-            StringBuilder str = new StringBuilder("0");
-            for(int x : currState){
-                str.append(x);
-            }
-            double val = Integer.parseInt(str.toString());
-            expectedValues.minEV = val;
-            expectedValues.maxEV = val;
-            return expectedValues;
-        }
-
-        int start = lastRolled != -1 ? lastRolled : 2;
-        int end = lastRolled != -1 ? lastRolled : 12;
-        for (int i = start; i <= end; i++) {
-            Result rollExtremes = new Result (Integer.MAX_VALUE, Integer.MIN_VALUE);
-            List<List<Integer>> removalOptions = getRemovalOptions(currState, i, 0, 0);
-            for(List<Integer> rOption : removalOptions){
-                List<Integer> nextState = new LinkedList<>(currState);
-                nextState.removeAll(rOption);
-                Result res  = getExpectedValueHelper(nextState, -1, rOption.size() == 0);
-                if(res.minEV < rollExtremes.minEV){
-                    rollExtremes.minEV = res.minEV;
-                    rollExtremes.minRemovals = rOption;
+        checkRoll(roll);
+        if (this.mode == Mode.MEMOIZED) {
+            return getMemoizedValue(solveBoards()[toMask(currState)], roll);
+        }
+        if (this.mode == Mode.EXACT) {
+            return getMemoizedValue(solveExactBoards()[toMask(currState)], roll);
+        }
+        if (this.mode == Mode.PARALLEL) {
+            return getMemoizedValue(this.pool.invoke(new BoardTask(toMask(currState))), roll);
+        }
+        return getExpectedValueHelper(toMask(currState), roll);
+    }
+
+    /**
+     * Answers a stream of queries from the solved table. Each query is a line holding the board as a string of digits
+     * and the roll, e.g. "12349 4". Blank lines and lines starting with '#' are skipped. Each answer is written as one
+     * line: the board, the roll, the minimizing removal and its expected value, then the maximizing removal and its
+     * expected value, e.g. "12349 4 13 151.70370370370367 4 401.2454561042524". A "-" means nothing can be removed.
+     *
+     * @param in The queries.
+     * @param out Where the answers are written. It is flushed but not closed.
+     * @throws IOException if a query is malformed (a repeated tile, a missing board or a roll outside 2 to 12).
+     */
+    public void answerQueries(BufferedReader in, Writer out) throws IOException {
+        Board[] boards = solveBoards();
+        StringBuilder line = new StringBuilder();
+        String query;
+        int lineNumber = 0;
+        while ((query = in.readLine()) != null) {
+            lineNumber++;
+            query = query.trim();
+            if (query.isEmpty() || query.charAt(0) == '#') {
+                continue;
+            }
+            int mask = 0;
+            int i = 0;
+            for (; i < query.length() && query.charAt(i) >= '1' && query.charAt(i) <= '9'; i++) {
+                int bit = 1 << (query.charAt(i) - '1');
+                if ((mask & bit) != 0) {
+                    throw new IOException("Bad query on line " + lineNumber + ": " + query);
                 }
-                if(res.maxEV > rollExtremes.maxEV){
-                    rollExtremes.maxEV = res.maxEV;
-                    rollExtremes.maxRemovals = rOption;
+                mask |= bit;
+            }
+            int roll;
+            try {
+                roll = Integer.parseInt(query.substring(i).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad query on line " + lineNumber + ": " + query);
+            }
+            if (i == 0 || roll < 2 || roll > 12) {
+                throw new IOException("Bad query on line " + lineNumber + ": " + query);
+            }
+            Board board = boards[mask];
+            line.setLength(0);
+            appendTiles(line, mask).append(' ').append(roll).append(' ');
+            appendTiles(line, board.minRemovals[roll]).append(' ').append(board.rollMinEV[roll]).append(' ');
+            appendTiles(line, board.maxRemovals[roll]).append(' ').append(board.rollMaxEV[roll]).append('\n');
+            out.append(line);
+        }
+        out.flush();
+    }
+
+    /**
+     * Appends the tiles of a mask as digits in increasing order ("-" for an empty mask).
+     */
+    private static StringBuilder appendTiles(StringBuilder line, int mask) {
+        if (mask == 0) {
+            return line.append('-');
+        }
+        for (int t = 1; t <= TILES; t++) {
+            if ((mask & (1 << (t - 1))) != 0) {
+                line.append((char) ('0' + t));
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Reads the answer for a roll out of a solved board.
+     */
+    private Result getMemoizedValue(Board board, int roll) {
+        Result res = new Result(board.rollMinEV[roll], board.rollMaxEV[roll],
+                toList(board.minRemovals[roll]), toList(board.maxRemovals[roll]));
+        if (board.rollMinExact != null) {
+            res.minNumerator = board.rollMinExact[roll];
+            res.maxNumerator = board.rollMaxExact[roll];
+        }
+        return res;
+    }
+
+    synchronized Board[] solveExactBoards() {
+        if (this.exactMemo == null) {
+            Board[] boards = new Board[BOARDS];
+            for (int mask = 0; mask < BOARDS; mask++) {
+                boards[mask] = solveExactBoard(boards, mask);
+            }
+            this.exactMemo = boards;
+        }
+        return this.exactMemo;
+    }
+
+    /**
+     * Same as solveBoard(), but in whole numbers of 1 / EXACT_DENOMINATOR. The doubles in the Board are the exact
+     * values rounded once at the end, rather than sums of rounded products.
+     */
+    private Board solveExactBoard(Board[] boards, int mask) {
+        Board board = new Board();
+        board.rollMinExact = new BigInteger[13];
+        board.rollMaxExact = new BigInteger[13];
+        BigInteger minSum = BigInteger.ZERO;
+        BigInteger maxSum = BigInteger.ZERO;
+        for (int roll = 2; roll <= 12; roll++) {
+            BigInteger rollMin = null;
+            BigInteger rollMax = null;
+            for (int rem : removalOptions[mask][roll]) {
+                Board next = boards[mask & ~rem];
+                if (rollMin == null || next.minExact.compareTo(rollMin) < 0) {
+                    rollMin = next.minExact;
+                    board.minRemovals[roll] = rem;
+                }
+                if (rollMax == null || next.maxExact.compareTo(rollMax) > 0) {
+                    rollMax = next.maxExact;
+                    board.maxRemovals[roll] = rem;
                 }
             }
-            expectedValues.minEV += lastRolled == -1 ?
-                    rollExtremes.minEV * (this.probKey[i] / this.permutations): rollExtremes.minEV;
+            if (rollMin == null) {
+                rollMin = BigInteger.valueOf(scores[mask]).multiply(EXACT_DENOMINATOR);
+                rollMax = rollMin;
+            }
+            board.rollMinExact[roll] = rollMin;
+            board.rollMaxExact[roll] = rollMax;
+            board.rollMinEV[roll] = toDouble(rollMin);
+            board.rollMaxEV[roll] = toDouble(rollMax);
+            BigInteger ways = BigInteger.valueOf((long) this.probKey[roll]);
+            minSum = minSum.add(rollMin.multiply(ways));
+            maxSum = maxSum.add(rollMax.multiply(ways));
+        }
+        // the successors have fewer tiles than this board, so these divisions are always exact:
+        BigInteger permutations = BigInteger.valueOf(this.permutations);
+        board.minExact = minSum.divide(permutations);
+        board.maxExact = maxSum.divide(permutations);
+        board.minEV = toDouble(board.minExact);
+        board.maxEV = toDouble(board.maxExact);
+        return board;
+    }
+
+    private static double toDouble(BigInteger numerator) {
+        return new BigDecimal(numerator).divide(EXACT_DIVISOR, MathContext.DECIMAL128).doubleValue();
+    }
+
+    synchronized Board[] solveBoards() {
+        if (this.memo == null) {
+            Board[] boards = new Board[BOARDS];
+            // removing tiles always leads to a smaller mask, so every successor is solved before it is needed:
+            for (int mask = 0; mask < BOARDS; mask++) {
+                boards[mask] = solveBoard(m -> boards[m], mask);
+            }
+            this.memo = boards;
+        }
+        return this.memo;
+    }
+
+    /**
+     * Solves a board whose successors are all available from the given lookup.
+     */
+    private Board solveBoard(IntFunction<Board> boards, int mask) {
+        Board board = new Board();
+        for (int roll = 2; roll <= 12; roll++) {
+            double rollMin = Integer.MAX_VALUE;
+            double rollMax = Integer.MIN_VALUE;
+            for (int rem : removalOptions[mask][roll]) {
+                Board next = boards.apply(mask & ~rem);
+                if (next.minEV < rollMin) {
+                    rollMin = next.minEV;
+                    board.minRemovals[roll] = rem;
+                }
+                if (next.maxEV > rollMax) {
+                    rollMax = next.maxEV;
+                    board.maxRemovals[roll] = rem;
+                }
+            }
+            // nothing can be removed, so the game ends with the board as it is:
+            if (removalOptions[mask][roll].length == 0) {
+                rollMin = scores[mask];
+                rollMax = scores[mask];
+            }
+            board.rollMinEV[roll] = rollMin;
+            board.rollMaxEV[roll] = rollMax;
+            board.minEV += rollMin * (this.probKey[roll] / this.permutations);
+            board.maxEV += rollMax * (this.probKey[roll] / this.permutations);
+        }
+        return board;
+    }
+
+    /**
+     * Solves a board and everything reachable from it on the current thread, using and filling the shared memo.
+     */
+    private Board solveShared(int mask) {
+        Board board = this.sharedMemo.get(mask);
+        if (board == null) {
+            for (int roll = 2; roll <= 12; roll++) {
+                for (int rem : removalOptions[mask][roll]) {
+                    solveShared(mask & ~rem);
+                }
+            }
+            board = solveBoard(this.sharedMemo::get, mask);
+            // another task may have solved the same board in the meantime; keep whichever got there first:
+            if (!this.sharedMemo.compareAndSet(mask, null, board)) {
+                board = this.sharedMemo.get(mask);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Solves one board in PARALLEL mode. Above the cutoff, every unsolved successor (over all rolls and removals) is
+     * forked as its own task before the board itself is combined.
+     */
+    @SuppressWarnings("serial")
+    private class BoardTask extends RecursiveTask<Board> {
+        private final int mask;
+
+        private BoardTask(int mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        protected Board compute() {
+            if (sharedMemo.get(this.mask) == null && Integer.bitCount(this.mask) > PARALLEL_CUTOFF) {
+                List<BoardTask> tasks = new ArrayList<>();
+                for (int roll = 2; roll <= 12; roll++) {
+                    for (int rem : removalOptions[this.mask][roll]) {
+                        if (sharedMemo.get(this.mask & ~rem) == null) {
+                            tasks.add(new BoardTask(this.mask & ~rem));
+                        }
+                    }
+                }
+                invokeAll(tasks);
+            }
+            return solveShared(this.mask);
+        }
+    }
 
-            expectedValues.maxEV += lastRolled == -1 ?
-                   rollExtremes.maxEV * (this.probKey[i] / this.permutations): rollExtremes.maxEV;
+    static int toMask(List<Integer> currState) {
+        int mask = 0;
+        for (int x : currState) {
+            if (x < 1 || x > TILES) {
+                throw new IllegalArgumentException(x + " is not a tile (tiles run from 1 to " + TILES + ")");
+            }
+            if ((mask & (1 << (x - 1))) != 0) {
+                throw new IllegalArgumentException("No duplicates are allowed");
+            }
+            mask |= 1 << (x - 1);
+        }
+        return mask;
+    }
 
-            expectedValues.maxRemovals = rollExtremes.maxRemovals;
-            expectedValues.minRemovals = rollExtremes.minRemovals;
+    static void checkRoll(int roll) {
+        if (roll < 2 || roll > 12) {
+            throw new IllegalArgumentException("The roll must be between 2 and 12");
         }
+    }
 
-        return expectedValues;
+    static List<Integer> toList(int mask) {
+        List<Integer> list = new LinkedList<>();
+        for (int t = TILES; t >= 1; t--) {
+            if ((mask & (1 << (t - 1))) != 0) {
+                list.add(t);
+            }
+        }
+        return list;
     }
 
-    private List<List<Integer>> getRemovalOptions(List<Integer> currState, int roll, int idx, int depth) {
-        if (roll == 0) {
-            return new ArrayList<>(Collections.singletonList(new LinkedList<>()));
+
+    /**
+     * Walks the game tree for the given roll without memoizing. Only the final Result is allocated; the recursion
+     * below it runs on masks and the removalOptions table.
+     */
+    private Result getExpectedValueHelper(int mask, int roll) {
+        int[] options = removalOptions[mask][roll];
+        if (options.length == 0) {
+            return new Result(scores[mask], scores[mask], new LinkedList<>(), new LinkedList<>());
         }
-        List<List<Integer>> rList = new ArrayList<>();
-        int i = idx;
-        while (i < currState.size() && currState.get(i) <= roll) {
-            int val = currState.get(i);
-            List<List<Integer>> successor = getRemovalOptions(currState, roll - val, i + 1, depth + 1);
-            for (List<Integer> seq : successor) {
-                seq.add(val);
-                rList.add(seq);
+        double[] evs = new double[2 * (TILES + 1)];
+        double rollMin = Integer.MAX_VALUE;
+        double rollMax = Integer.MIN_VALUE;
+        int minRemovals = 0;
+        int maxRemovals = 0;
+        for (int rem : options) {
+            search(mask & ~rem, evs, 0);
+            if (evs[0] < rollMin) {
+                rollMin = evs[0];
+                minRemovals = rem;
+            }
+            if (evs[1] > rollMax) {
+                rollMax = evs[1];
+                maxRemovals = rem;
             }
-            i++;
         }
-        if(depth == 0 && rList.size() == 0){
-            rList.add(new LinkedList<>());
+        return new Result(rollMin, rollMax, toList(minRemovals), toList(maxRemovals));
+    }
+
+    /**
+     * Writes the min and max expected values of a board (before the dice are rolled) into evs[2 * depth] and
+     * evs[2 * depth + 1]. Every turn removes at least one tile, so depth never passes TILES.
+     */
+    private void search(int mask, double[] evs, int depth) {
+        int next = 2 * (depth + 1);
+        double minEV = 0;
+        double maxEV = 0;
+        for (int roll = 2; roll <= 12; roll++) {
+            int[] options = removalOptions[mask][roll];
+            double rollMin = Integer.MAX_VALUE;
+            double rollMax = Integer.MIN_VALUE;
+            for (int rem : options) {
+                search(mask & ~rem, evs, depth + 1);
+                rollMin = Math.min(rollMin, evs[next]);
+                rollMax = Math.max(rollMax, evs[next + 1]);
+            }
+            if (options.length == 0) {
+                rollMin = scores[mask];
+                rollMax = scores[mask];
+            }
+            minEV += rollMin * (this.probKey[roll] / this.permutations);
+            maxEV += rollMax * (this.probKey[roll] / this.permutations);
         }
-        return rList;
+        evs[2 * depth] = minEV;
+        evs[2 * depth + 1] = maxEV;
+    }
+
+    /**
+     * A solved board: its expected values before the dice are rolled, and the best removals for every roll.
+     */
+    static class Board {
+        double minEV, maxEV;
+        final double[] rollMinEV = new double[13];
+        final double[] rollMaxEV = new double[13];
+        final int[] minRemovals = new int[13];
+        final int[] maxRemovals = new int[13];
+        //only filled in by EXACT mode, in whole numbers of 1 / EXACT_DENOMINATOR:
+        BigInteger minExact, maxExact;
+        BigInteger[] rollMinExact, rollMaxExact;
     }
-    private class Result {
+
+    static class Result {
         private double minEV, maxEV;
         private List<Integer> minRemovals, maxRemovals;
-        private Result(double minEV, double maxEV){
+        //the exact expected values over EXACT_DENOMINATOR, or null when they weren't computed:
+        private BigInteger minNumerator, maxNumerator;
+        Result(double minEV, double maxEV){
             this.minEV = minEV;
             this.maxEV = maxEV;
         }
+        Result(double minEV, double maxEV, List<Integer> minRemovals, List<Integer> maxRemovals){
+            this(minEV, maxEV);
+            this.minRemovals = minRemovals;
+            this.maxRemovals = maxRemovals;
+        }
         @Override
         public String toString() {
-            return "minimize removal: " + this.minRemovals + "\nminimizing expected value: " + this.minEV + "\n\n" +
-                    "maximize Removal: " + this.maxRemovals + "\nmaximizing expected value: " + this.maxEV;
+            return "minimize removal: " + this.minRemovals + "\nminimizing expected value: " + this.minEV
+                    + fraction(this.minNumerator) + "\n\n" + "maximize Removal: " + this.maxRemovals
+                    + "\nmaximizing expected value: " + this.maxEV + fraction(this.maxNumerator);
+        }
+
+        private String fraction(BigInteger numerator) {
+            if (numerator == null) {
+                return "";
+            }
+            BigInteger gcd = numerator.gcd(EXACT_DENOMINATOR);
+            return " (exactly " + numerator.divide(gcd) + "/" + EXACT_DENOMINATOR.divide(gcd) + ")";
         }
     }
 }
@@ -0,0 +1,212 @@
+import java.util.*;
+
+/**
+ * KnockoutEngine plays the same game as Knockout, but the tiles and the dice are configurable: the board holds every
+ * tile from lowTile to highTile, and each turn rolls a number of dice with the given number of faces. The roll
+ * distribution is found by convolving the single-die distribution with itself once per die.
+ *
+ * Boards are masks (bit i is set while tile lowTile + i is up), and every board is solved once, bottom-up, into two
+ * dense arrays of expected values. Removal sets are enumerated in increasing tile order and abandoned as soon as they
+ * pass the largest roll, so each board only looks at the handful of subsets that could ever be removed. That keeps 16
+ * tiles (65536 boards) well under a second.
+ *
+ * As in Knockout, a finished board scores the concatenation of its remaining tiles (so {1, 12} scores 112). Past
+ * about 15 digits the score is no longer exact in a double, which only matters for very large variants.
+ *
+ * @author Alex Meislich
+ */
+class KnockoutEngine {
+    //2^20 boards already take 16 MB of expected values:
+    private static final int MAX_TILES = 20;
+
+    private final int lowTile;
+    private final int tiles;
+    private final int minRoll;
+    private final int maxRoll;
+    private final double[] rollOdds;
+    private final double[] scores;
+
+    //the expected values of every board before the dice are rolled, filled in by solve():
+    private double[] minEV;
+    private double[] maxEV;
+
+    //scratch space used while solving a board:
+    private final double[] rollMin;
+    private final double[] rollMax;
+
+    public static void main(String[] args) {
+        KnockoutEngine standard = new KnockoutEngine(1, 9, 2, 6);
+        System.out.println(standard.getExpectedValue(new LinkedList<>(Arrays.asList(1, 2, 3, 4, 9)), 4) + "\n");
+
+        long start = System.currentTimeMillis();
+        KnockoutEngine large = new KnockoutEngine(1, 16, 3, 6);
+        System.out.println(large.getExpectedValue(new LinkedList<>(Arrays.asList(1, 2, 5, 8, 11, 13, 16)), 10)
+                + "\n" + (System.currentTimeMillis() - start));
+    }
+
+    /**
+     * @param lowTile The smallest tile on a full board (at least 1).
+     * @param highTile The largest tile on a full board.
+     * @param dice The number of dice rolled each turn.
+     * @param faces The number of faces on each die (numbered 1 to faces).
+     */
+    public KnockoutEngine(int lowTile, int highTile, int dice, int faces) {
+        if (lowTile < 1 || highTile < lowTile || highTile - lowTile + 1 > MAX_TILES) {
+            throw new IllegalArgumentException("Tiles must run from a positive number to at most " + MAX_TILES
+                    + " tiles later (got " + lowTile + " to " + highTile + ")");
+        }
+        if (dice < 1 || faces < 1 || (long) dice * faces > 1000) {
+            throw new IllegalArgumentException("Unsupported dice: " + dice + "d" + faces);
+        }
+        this.lowTile = lowTile;
+        this.tiles = highTile - lowTile + 1;
+        this.minRoll = dice;
+        this.maxRoll = dice * faces;
+        this.rollOdds = rollOdds(dice, faces);
+        this.rollMin = new double[this.maxRoll + 1];
+        this.rollMax = new double[this.maxRoll + 1];
+
+        this.scores = new double[1 << this.tiles];
+        for (int mask = 1; mask < this.scores.length; mask++) {
+            int high = 31 - Integer.numberOfLeadingZeros(mask);
+            int tile = lowTile + high;
+            this.scores[mask] = this.scores[mask & ~(1 << high)] * Math.pow(10, Integer.toString(tile).length()) + tile;
+        }
+    }
+
+    /**
+     * Convolves one die with itself "dice" times. The probabilities themselves are convolved, not the number of ways to
+     * roll each sum, since the number of ways overflows a long for dice like 30d6 long before the roll limit.
+     *
+     * @return odds[r] == the probability that the dice add up to r.
+     */
+    private static double[] rollOdds(int dice, int faces) {
+        double[] odds = {1};
+        for (int d = 0; d < dice; d++) {
+            double[] next = new double[odds.length + faces];
+            for (int sum = 0; sum < odds.length; sum++) {
+                for (int face = 1; face <= faces; face++) {
+                    next[sum + face] += odds[sum] / faces;
+                }
+            }
+            odds = next;
+        }
+        return odds;
+    }
+
+    /**
+     * Same as Knockout.getExpectedValue(), for this engine's tiles and dice.
+     *
+     * @param currState The numbers remaining on the board.
+     * @param roll The sum of the dice rolled.
+     * @return A Result object containing the minimum and maximum expected values of the game (assuming perfect play
+     * aimed at either minimizing or maximizing).
+     */
+    public Knockout.Result getExpectedValue(List<Integer> currState, int roll) {
+        int mask = toMask(currState);
+        if (roll < this.minRoll || roll > this.maxRoll) {
+            throw new IllegalArgumentException("The roll must be between " + this.minRoll + " and " + this.maxRoll);
+        }
+        solve();
+        synchronized (this) {
+            Arrays.fill(this.rollMin, Double.NaN);
+            Arrays.fill(this.rollMax, Double.NaN);
+            int[] best = new int[this.maxRoll + 1];
+            int[] worst = new int[this.maxRoll + 1];
+            collectRemovals(mask, 0, 0, 0, best, worst);
+            if (Double.isNaN(this.rollMin[roll])) {
+                return new Knockout.Result(this.scores[mask], this.scores[mask], new LinkedList<>(), new LinkedList<>());
+            }
+            return new Knockout.Result(this.rollMin[roll], this.rollMax[roll], toList(best[roll]), toList(worst[roll]));
+        }
+    }
+
+    /**
+     * Solves every board, smallest mask first (removing tiles always gives a smaller mask).
+     */
+    private synchronized void solve() {
+        if (this.minEV != null) {
+            return;
+        }
+        this.minEV = new double[1 << this.tiles];
+        this.maxEV = new double[1 << this.tiles];
+        for (int mask = 0; mask < this.minEV.length; mask++) {
+            Arrays.fill(this.rollMin, Double.NaN);
+            Arrays.fill(this.rollMax, Double.NaN);
+            collectRemovals(mask, 0, 0, 0, null, null);
+            double min = 0;
+            double max = 0;
+            for (int roll = this.minRoll; roll <= this.maxRoll; roll++) {
+                boolean over = Double.isNaN(this.rollMin[roll]);
+                min += (over ? this.scores[mask] : this.rollMin[roll]) * this.rollOdds[roll];
+                max += (over ? this.scores[mask] : this.rollMax[roll]) * this.rollOdds[roll];
+            }
+            this.minEV[mask] = min;
+            this.maxEV[mask] = max;
+        }
+    }
+
+    /**
+     * Visits every removal set of the board whose tiles add up to at most maxRoll, and records the best successor for
+     * each roll in rollMin and rollMax (NaN means nothing can be removed for that roll).
+     *
+     * @param mask The board.
+     * @param bit The lowest tile index that may still be added to the removal.
+     * @param rem The removal built so far.
+     * @param sum The sum of the tiles in rem.
+     * @param best If not null, best[roll] is set to the removal reaching rollMin[roll].
+     * @param worst If not null, worst[roll] is set to the removal reaching rollMax[roll].
+     */
+    private void collectRemovals(int mask, int bit, int rem, int sum, int[] best, int[] worst) {
+        for (int i = bit; i < this.tiles; i++) {
+            int next = sum + this.lowTile + i;
+            if (next > this.maxRoll) {
+                return;
+            }
+            if ((mask & (1 << i)) == 0) {
+                continue;
+            }
+            int nextRem = rem | (1 << i);
+            int successor = mask & ~nextRem;
+            if (Double.isNaN(this.rollMin[next]) || this.minEV[successor] < this.rollMin[next]) {
+                this.rollMin[next] = this.minEV[successor];
+                if (best != null) {
+                    best[next] = nextRem;
+                }
+            }
+            if (Double.isNaN(this.rollMax[next]) || this.maxEV[successor] > this.rollMax[next]) {
+                this.rollMax[next] = this.maxEV[successor];
+                if (worst != null) {
+                    worst[next] = nextRem;
+                }
+            }
+            collectRemovals(mask, i + 1, nextRem, next, best, worst);
+        }
+    }
+
+    private int toMask(List<Integer> currState) {
+        int mask = 0;
+        for (int x : currState) {
+            int bit = x - this.lowTile;
+            if (bit < 0 || bit >= this.tiles) {
+                throw new IllegalArgumentException(x + " is not a tile (tiles run from " + this.lowTile + " to "
+                        + (this.lowTile + this.tiles - 1) + ")");
+            }
+            if ((mask & (1 << bit)) != 0) {
+                throw new IllegalArgumentException("No duplicates are allowed");
+            }
+            mask |= 1 << bit;
+        }
+        return mask;
+    }
+
+    private List<Integer> toList(int mask) {
+        List<Integer> list = new LinkedList<>();
+        for (int i = this.tiles - 1; i >= 0; i--) {
+            if ((mask & (1 << i)) != 0) {
+                list.add(this.lowTile + i);
+            }
+        }
+        return list;
+    }
+}
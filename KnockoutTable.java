@@ -0,0 +1,118 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * KnockoutTable is a precomputed strategy table for Knockout. The game only has 512 boards and 11 possible rolls, so
+ * every answer getExpectedValue() could ever give fits in a small file. The table is built offline with build() (or by
+ * running main) and loaded with load(), which memory-maps the file so that no search is done at startup and every
+ * query is a constant-time read.
+ *
+ * The file starts with a header (magic number, number of boards, lowest roll, highest roll) followed by one record for
+ * every (board, roll) pair in board-major order. A record holds the minimizing expected value, the maximizing expected
+ * value, and the two removal masks (bit t - 1 set for tile t).
+ *
+ * @author Alex Meislich
+ */
+class KnockoutTable {
+    private static final int MAGIC = 0x4B4E4B31; // "KNK1"
+    private static final int MIN_ROLL = 2;
+    private static final int MAX_ROLL = 12;
+    private static final int ROLLS = MAX_ROLL - MIN_ROLL + 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int RECORD_BYTES = 2 * Double.BYTES + 2 * Short.BYTES;
+
+    private final MappedByteBuffer table;
+
+    private KnockoutTable(MappedByteBuffer table) {
+        this.table = table;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path out = Paths.get(args.length > 0 ? args[0] : "knockout.tbl");
+        build(out);
+        KnockoutTable table = load(out);
+        System.out.println(table.getExpectedValue(Arrays.asList(1, 2, 3, 4, 9), 4));
+    }
+
+    /**
+     * Solves every board and writes the table to the given file.
+     *
+     * @param out The file to write the table to.
+     */
+    public static void build(Path out) throws IOException {
+        Knockout.Board[] boards = new Knockout(Knockout.Mode.MEMOIZED).solveBoards();
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(out)))) {
+            data.writeInt(MAGIC);
+            data.writeInt(Knockout.BOARDS);
+            data.writeInt(MIN_ROLL);
+            data.writeInt(MAX_ROLL);
+            for (Knockout.Board board : boards) {
+                for (int roll = MIN_ROLL; roll <= MAX_ROLL; roll++) {
+                    data.writeDouble(board.rollMinEV[roll]);
+                    data.writeDouble(board.rollMaxEV[roll]);
+                    data.writeShort(board.minRemovals[roll]);
+                    data.writeShort(board.maxRemovals[roll]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a table written by build().
+     *
+     * @param in The table file.
+     * @return A KnockoutTable backed by the mapped file.
+     */
+    public static KnockoutTable load(Path in) throws IOException {
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+            long expected = HEADER_BYTES + (long) Knockout.BOARDS * ROLLS * RECORD_BYTES;
+            if (channel.size() != expected) {
+                throw new IOException("Knockout table " + in + " has " + channel.size() + " bytes (expected "
+                        + expected + ")");
+            }
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            if (table.getInt(0) != MAGIC || table.getInt(4) != Knockout.BOARDS || table.getInt(8) != MIN_ROLL
+                    || table.getInt(12) != MAX_ROLL) {
+                throw new IOException(in + " is not a Knockout table");
+            }
+            return new KnockoutTable(table);
+        }
+    }
+
+    /**
+     * Same as Knockout.getExpectedValue(), but read straight from the table.
+     *
+     * @param currState The numbers remaining on the board.
+     * @param roll The sum of the two dice rolled.
+     * @return A Result object containing the minimum and maximum expected values of the game.
+     */
+    public Knockout.Result getExpectedValue(List<Integer> currState, int roll) {
+        int mask = Knockout.toMask(currState);
+        Knockout.checkRoll(roll);
+        return new Knockout.Result(minEV(mask, roll), maxEV(mask, roll),
+                Knockout.toList(minRemovals(mask, roll)), Knockout.toList(maxRemovals(mask, roll)));
+    }
+
+    double minEV(int mask, int roll) {
+        return this.table.getDouble(offset(mask, roll));
+    }
+
+    double maxEV(int mask, int roll) {
+        return this.table.getDouble(offset(mask, roll) + Double.BYTES);
+    }
+
+    int minRemovals(int mask, int roll) {
+        return this.table.getShort(offset(mask, roll) + 2 * Double.BYTES);
+    }
+
+    int maxRemovals(int mask, int roll) {
+        return this.table.getShort(offset(mask, roll) + 2 * Double.BYTES + Short.BYTES);
+    }
+
+    private static int offset(int mask, int roll) {
+        return HEADER_BYTES + (mask * ROLLS + roll - MIN_ROLL) * RECORD_BYTES;
+    }
+}
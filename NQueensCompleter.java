@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The NQueensCompleter answers N-Queens questions about partly filled boards: given some queens that are already
+ * placed and some squares that can't be used, it counts or lists every way to finish the board. It is made once per
+ * board size, precomputing which squares every queen attacks, and can then answer any number of queries (from any
+ * number of threads) for that size.
+ *
+ * A query is made of two arrays, both indexed by row:
+ *   fixed[row]   - the column of the queen already placed on that row, or -1 if the row is still empty.
+ *   blocked[row] - a mask of the squares on that row that can't hold a queen (bit c for column c). May be null.
+ * The search is NQueensSolver's bitboard search, with each row only allowed the squares the query leaves it.
+ *
+ * @author Alex Meislich
+ */
+class NQueensCompleter {
+    private final int n;
+    private final long full;
+    //attacks[row][col][r] == the squares on row r attacked by a queen at (row, col):
+    private final long[][][] attacks;
+
+    public static void main(String[] args) {
+        NQueensCompleter completer = new NQueensCompleter(8);
+        int[] fixed = {-1, -1, -1, 3, -1, -1, -1, -1};
+        long[] blocked = new long[8];
+        blocked[0] = 0b0000_0001;
+        System.out.println(completer.countCompletions(fixed, blocked));
+        completer.forEachCompletion(fixed, blocked, placement -> System.out.println(Arrays.toString(placement)));
+    }
+
+    /**
+     * @param n the size of the board (at most 63).
+     */
+    public NQueensCompleter(int n) {
+        if (n < 1 || n > 63) {
+            throw new IllegalArgumentException("n must be between 1 and 63 (got " + n + ")");
+        }
+        this.n = n;
+        this.full = (1L << n) - 1;
+        this.attacks = new long[n][n][n];
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                for (int r = 0; r < n; r++) {
+                    int d = Math.abs(r - row);
+                    long mask = 1L << col;
+                    if (col + d < n) {
+                        mask |= 1L << (col + d);
+                    }
+                    if (col - d >= 0) {
+                        mask |= 1L << (col - d);
+                    }
+                    this.attacks[row][col][r] = r == row ? this.full : mask;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of ways to finish the board, or 0 if the fixed queens already attack each other or sit on
+     * blocked squares.
+     */
+    public long countCompletions(int[] fixed, long[] blocked) {
+        long[] allowed = allowedSquares(fixed, blocked);
+        return allowed == null ? 0 : NQueensSolver.countQueens(allowed, 0, 0L, 0L, 0L);
+    }
+
+    /**
+     * Hands every finished board to the consumer as an array where placement[row] == the column of the queen on that
+     * row (the fixed queens included). The same array is reused for every board, so consumers that keep a board must
+     * copy it.
+     */
+    public void forEachCompletion(int[] fixed, long[] blocked, Consumer<int[]> consumer) {
+        long[] allowed = allowedSquares(fixed, blocked);
+        if (allowed != null) {
+            NQueensSolver.visitQueens(allowed, 0, 0L, 0L, 0L, new int[this.n], consumer);
+        }
+    }
+
+    /**
+     * Works out which squares each row may use: the fixed queen's square on a fixed row, and otherwise every square
+     * that isn't blocked or attacked by a fixed queen.
+     *
+     * @return the allowed squares per row, or null if the query can't be completed.
+     */
+    private long[] allowedSquares(int[] fixed, long[] blocked) {
+        if (fixed.length != this.n || (blocked != null && blocked.length != this.n)) {
+            throw new IllegalArgumentException("A query must describe all " + this.n + " rows");
+        }
+        long[] allowed = new long[this.n];
+        for (int row = 0; row < this.n; row++) {
+            allowed[row] = this.full & ~(blocked == null ? 0L : blocked[row]);
+        }
+        for (int row = 0; row < this.n; row++) {
+            int col = fixed[row];
+            if (col < -1 || col >= this.n) {
+                throw new IllegalArgumentException("Row " + row + " has a queen off the board (column " + col + ")");
+            }
+            if (col == -1) {
+                continue;
+            }
+            if ((allowed[row] & (1L << col)) == 0) {
+                return null;
+            }
+            long[] attacked = this.attacks[row][col];
+            for (int r = 0; r < this.n; r++) {
+                allowed[r] &= ~attacked[r];
+            }
+            allowed[row] = 1L << col;
+        }
+        for (long squares : allowed) {
+            if (squares == 0) {
+                return null;
+            }
+        }
+        return allowed;
+    }
+}
@@ -1,9 +1,22 @@
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The NQueensSolver is designed to provide all possible ways that n queens can be fit on a chessboard
- * sized nxn such that none of the queens attack each other. Users can interact with the class through
- * its one public method (called solveNQueens(int n) once an instance of NQueensSolver has been created.
+ * sized nxn such that none of the queens attack each other. Once an instance of NQueensSolver has been created,
+ * solveNQueens(int n) lists every solution as drawn boards, and solveNQueensBitboard gives the same list from a
+ * faster bitboard search. The other public methods work on placements (placement[row] == the column of the queen
+ * on that row) instead of drawn boards:
+ *   countNQueens      - counts the solutions without building them.
+ *   forEachSolution   - hands each solution to a consumer as it is found.
+ *   streamNQueens     - gives the solutions as a lazy Stream.
+ *   uniqueNQueens     - gives one solution per group of rotations and reflections.
+ *   findOneSolution   - finds a single solution for any n without searching (findOneSolutionMinConflicts is the
+ *                       local-search fallback).
+ *   isValidSolution   - checks a placement.
+ * NQueensCompleter and ParallelNQueensSolver build on the same bitboard search.
  *
  * @author Alex Meislich
  * @date 27 May 2020
@@ -21,25 +34,504 @@ class NQueensSolver {
         return rList;
     }
 
-   
-    private void addEntry(Coordinate co) {
-        Coordinate c = co;
-        List<String> newList = new LinkedList<>();
-        for(int i = 0; i < this.n; i++){
-            String str = "";
-            for(int j = 0; j < this.n; j++) {
-                if (j != c.col) {
-                    str += ".  ";
-                } else {
-                    str += "Q  ";
+    /**
+     * Gives the same solutions as solveNQueens (in the same order), but searches with bitboards: the occupied columns
+     * and both sets of diagonals are each kept in a long, and every row tries its free squares from the lowest bit up.
+     * Every call returns a new list.
+     *
+     * @param n the size of the board (at most 63).
+     * @return the list of solutions
+     */
+    public List<List<String>> solveNQueensBitboard(int n) {
+        checkSize(n);
+        List<List<String>> solutions = new ArrayList<>();
+        visitQueens(emptyBoard(n), 0, 0L, 0L, 0L, new int[n], placement -> solutions.add(toBoard(placement)));
+        return solutions;
+    }
+
+    /**
+     * Counts the solutions without building any of them. Mirroring the board left to right maps solutions with the
+     * first queen on the left half onto those with it on the right half, so only the left half of the first row is
+     * searched and doubled. When n is odd and the first queen is in the middle column, the same is done with the
+     * second row.
+     *
+     * @param n the size of the board (at most 63).
+     * @return the number of solutions
+     */
+    public long countNQueens(int n) {
+        checkSize(n);
+        if (n == 1) {
+            return 1;
+        }
+        long[] allowed = emptyBoard(n);
+        long count = 0;
+        for (int col = 0; col < n / 2; col++) {
+            long bit = 1L << col;
+            count += 2 * countQueens(allowed, 1, bit, bit << 1, bit >>> 1);
+        }
+        if (n % 2 == 1) {
+            long mid = 1L << (n / 2);
+            long free = ~(mid | mid << 1 | mid >>> 1) & (mid - 1);
+            while (free != 0) {
+                long bit = free & -free;
+                free ^= bit;
+                count += 2 * countQueens(allowed, 2, mid | bit, (mid << 1 | bit) << 1, (mid >>> 1 | bit) >>> 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The bitboard search behind every search here, and behind NQueensCompleter: counts the ways to fill the rows from
+     * row down, where each row may only use the squares in allowed[row] that no queen above attacks. An empty board
+     * allows every square (see emptyBoard).
+     */
+    static long countQueens(long[] allowed, int row, long cols, long leftDiags, long rightDiags) {
+        if (row == allowed.length) {
+            return 1;
+        }
+        long count = 0;
+        long free = ~(cols | leftDiags | rightDiags) & allowed[row];
+        while (free != 0) {
+            long bit = free & -free;
+            free ^= bit;
+            count += countQueens(allowed, row + 1, cols | bit, (leftDiags | bit) << 1, (rightDiags | bit) >>> 1);
+        }
+        return count;
+    }
+
+    /**
+     * The same search as countQueens, handing each finished placement to the consumer (the array is reused).
+     */
+    static void visitQueens(long[] allowed, int row, long cols, long leftDiags, long rightDiags, int[] placement,
+                            Consumer<int[]> consumer) {
+        if (row == allowed.length) {
+            consumer.accept(placement);
+            return;
+        }
+        long free = ~(cols | leftDiags | rightDiags) & allowed[row];
+        while (free != 0) {
+            long bit = free & -free;
+            free ^= bit;
+            placement[row] = Long.numberOfTrailingZeros(bit);
+            visitQueens(allowed, row + 1, cols | bit, (leftDiags | bit) << 1, (rightDiags | bit) >>> 1, placement,
+                    consumer);
+        }
+    }
+
+    /**
+     * @return the allowed squares of every row of an empty n x n board, which is all of them.
+     */
+    static long[] emptyBoard(int n) {
+        long[] allowed = new long[n];
+        Arrays.fill(allowed, (1L << n) - 1);
+        return allowed;
+    }
+
+    /**
+     * Hands every solution to the consumer as it is found, in the same order as solveNQueens. A solution is given as
+     * an array where placement[row] == the column of the queen on that row. The same array is reused for every
+     * solution, so consumers that keep a solution must copy it.
+     *
+     * @param n the size of the board (at most 63).
+     * @param consumer receives each solution.
+     */
+    public void forEachSolution(int n, Consumer<int[]> consumer) {
+        checkSize(n);
+        visitQueens(emptyBoard(n), 0, 0L, 0L, 0L, new int[n], consumer);
+    }
+
+    /**
+     * Gives the solutions as a lazy Stream: the search only runs as far as the stream is consumed, and nothing but the
+     * current search path is held in memory. Each element is its own array (placement[row] == column).
+     *
+     * @param n the size of the board (at most 63).
+     * @return a sequential stream of solutions in the same order as solveNQueens
+     */
+    public Stream<int[]> streamNQueens(int n) {
+        checkSize(n);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new PlacementIterator(n),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * The bitboard search with an explicit stack, so it can stop after each solution and pick up where it left off.
+     */
+    private static class PlacementIterator implements Iterator<int[]> {
+        private final int n;
+        private final long full;
+        //the squares on each row that haven't been tried yet, and the board state when the row was entered:
+        private final long[] free;
+        private final long[] cols;
+        private final long[] leftDiags;
+        private final long[] rightDiags;
+        private final int[] placement;
+        private int row;
+        private int[] next;
+
+        private PlacementIterator(int n) {
+            this.n = n;
+            this.full = (1L << n) - 1;
+            this.free = new long[n + 1];
+            this.cols = new long[n + 1];
+            this.leftDiags = new long[n + 1];
+            this.rightDiags = new long[n + 1];
+            this.placement = new int[n];
+            this.free[0] = this.full;
+            this.next = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public int[] next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            int[] solution = this.next;
+            this.next = advance();
+            return solution;
+        }
+
+        /**
+         * Runs the search until the next solution (or the end of the search).
+         */
+        private int[] advance() {
+            while (this.row >= 0) {
+                long options = this.free[this.row];
+                if (options == 0) {
+                    this.row--;
+                    continue;
+                }
+                long bit = options & -options;
+                this.free[this.row] = options ^ bit;
+                this.placement[this.row] = Long.numberOfTrailingZeros(bit);
+                if (this.row == this.n - 1) {
+                    return this.placement.clone();
                 }
+                int r = this.row;
+                this.cols[r + 1] = this.cols[r] | bit;
+                this.leftDiags[r + 1] = (this.leftDiags[r] | bit) << 1;
+                this.rightDiags[r + 1] = (this.rightDiags[r] | bit) >>> 1;
+                this.free[r + 1] = ~(this.cols[r + 1] | this.leftDiags[r + 1] | this.rightDiags[r + 1]) & this.full;
+                this.row++;
             }
-            newList.add(0,str);
-            if(i != this.n - 1) {
-                c = c.prev;
+            return null;
+        }
+    }
+
+    /**
+     * Finds one solution from every group of solutions that are rotations or reflections of each other (the
+     * representative is the one whose placement array is lexicographically smallest). Like countNQueens, only the
+     * left half of the first row is searched, because a smallest placement can never start on the right half.
+     *
+     * @param n the size of the board (at most 63).
+     * @return the unique solutions, in lexicographic order
+     */
+    public List<UniqueSolution> uniqueNQueens(int n) {
+        checkSize(n);
+        List<UniqueSolution> unique = new ArrayList<>();
+        Consumer<int[]> keepCanonical = placement -> {
+            int[][] images = symmetries(placement);
+            for (int[] image : images) {
+                if (Arrays.compare(image, placement) < 0) {
+                    return;
+                }
             }
+            unique.add(new UniqueSolution(placement.clone(), distinct(images).size()));
+        };
+        long[] allowed = emptyBoard(n);
+        int[] placement = new int[n];
+        for (int col = 0; col <= (n - 1) / 2; col++) {
+            long bit = 1L << col;
+            placement[0] = col;
+            if (n % 2 == 0 || col < n / 2 || n == 1) {
+                visitQueens(allowed, 1, bit, bit << 1, bit >>> 1, placement, keepCanonical);
+                continue;
+            }
+            // first queen in the middle column: the second queen has to be on the left half instead:
+            long free = ~(bit | bit << 1 | bit >>> 1) & (bit - 1);
+            while (free != 0) {
+                long second = free & -free;
+                free ^= second;
+                placement[1] = Long.numberOfTrailingZeros(second);
+                visitQueens(allowed, 2, bit | second, (bit << 1 | second) << 1, (bit >>> 1 | second) >>> 1,
+                        placement, keepCanonical);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * The eight images of a placement under the symmetries of the square (placement[row] == column), starting with
+     * the placement itself.
+     */
+    private static int[][] symmetries(int[] placement) {
+        int n = placement.length;
+        int[][] images = new int[8][n];
+        for (int r = 0; r < n; r++) {
+            int c = placement[r];
+            images[0][r] = c;
+            images[1][r] = n - 1 - c;           // mirrored left to right
+            images[2][n - 1 - r] = c;           // mirrored top to bottom
+            images[3][n - 1 - r] = n - 1 - c;   // rotated 180 degrees
+            images[4][c] = r;                   // mirrored along the main diagonal
+            images[5][n - 1 - c] = n - 1 - r;   // mirrored along the other diagonal
+            images[6][c] = n - 1 - r;           // rotated 90 degrees
+            images[7][n - 1 - c] = r;           // rotated 270 degrees
+        }
+        return images;
+    }
+
+    /**
+     * The distinct arrays among the images, in lexicographic order.
+     */
+    private static List<int[]> distinct(int[][] images) {
+        List<int[]> sorted = new ArrayList<>(Arrays.asList(images));
+        sorted.sort(Arrays::compare);
+        List<int[]> distinct = new ArrayList<>();
+        for (int[] image : sorted) {
+            if (distinct.isEmpty() || !Arrays.equals(distinct.get(distinct.size() - 1), image)) {
+                distinct.add(image);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * A solution standing in for every solution that is a rotation or reflection of it.
+     */
+    static class UniqueSolution {
+        //placement[row] == the column of the queen on that row:
+        private final int[] placement;
+        //how many distinct solutions this one stands for (1, 2, 4 or 8):
+        private final int orbitSize;
+
+        private UniqueSolution(int[] placement, int orbitSize) {
+            this.placement = placement;
+            this.orbitSize = orbitSize;
+        }
+
+        public int[] getPlacement() {
+            return this.placement.clone();
+        }
+
+        public int getOrbitSize() {
+            return this.orbitSize;
+        }
+
+        /**
+         * @return every solution this one stands for (including itself), in lexicographic order.
+         */
+        public List<int[]> expand() {
+            return distinct(symmetries(this.placement));
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(this.placement) + " x" + this.orbitSize;
+        }
+    }
+
+    /**
+     * Draws a placement (placement[row] == the column of the queen on that row) the same way addEntry does.
+     */
+    static List<String> toBoard(int[] placement) {
+        int n = placement.length;
+        List<String> board = new ArrayList<>(n);
+        StringBuilder row = new StringBuilder(3 * n);
+        for (int col : placement) {
+            row.setLength(0);
+            for (int j = 0; j < n; j++) {
+                row.append(j == col ? "Q  " : ".  ");
+            }
+            board.add(row.toString());
+        }
+        return board;
+    }
+
+    /**
+     * Finds a single solution for any n in linear time, using the explicit construction that lists the even columns
+     * and then the odd ones (with a few moved around when n % 6 is 2 or 3). If the construction ever fails the
+     * validator, it falls back to findOneSolutionMinConflicts.
+     *
+     * @param n the size of the board.
+     * @return a placement where placement[row] == the column of the queen on that row, or null when n is 2 or 3
+     * (which have no solutions).
+     */
+    public int[] findOneSolution(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive (got " + n + ")");
+        }
+        if (n == 2 || n == 3) {
+            return null;
+        }
+        // built with 1-based columns, then shifted down:
+        int[] placement = new int[n];
+        int row = 0;
+        if (n % 6 == 3) {
+            for (int col = 4; col <= n; col += 2) {
+                placement[row++] = col;
+            }
+            placement[row++] = 2;
+            for (int col = 5; col <= n; col += 2) {
+                placement[row++] = col;
+            }
+            placement[row++] = 1;
+            placement[row++] = 3;
+        } else if (n % 6 == 2) {
+            for (int col = 2; col <= n; col += 2) {
+                placement[row++] = col;
+            }
+            placement[row++] = 3;
+            placement[row++] = 1;
+            for (int col = 7; col <= n; col += 2) {
+                placement[row++] = col;
+            }
+            placement[row++] = 5;
+        } else {
+            for (int col = 2; col <= n; col += 2) {
+                placement[row++] = col;
+            }
+            for (int col = 1; col <= n; col += 2) {
+                placement[row++] = col;
+            }
+        }
+        for (int r = 0; r < n; r++) {
+            placement[r]--;
+        }
+        return isValidSolution(placement) ? placement : findOneSolutionMinConflicts(n, n);
+    }
+
+    /**
+     * Finds a single solution with min-conflicts local search. The queens always form a permutation (one per row and
+     * column), so only diagonals can conflict. Rows are first filled greedily, each taking a random free column whose
+     * diagonals are still empty when one turns up within a few tries. Then every queen still under attack is swapped
+     * with random other rows until a swap lowers the number of attacking pairs. A pass that makes no progress starts
+     * over.
+     *
+     * @param n the size of the board.
+     * @param seed the seed for the random choices, so runs can be repeated.
+     * @return a placement where placement[row] == the column of the queen on that row, or null when n is 2 or 3.
+     */
+    public int[] findOneSolutionMinConflicts(int n, long seed) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive (got " + n + ")");
+        }
+        if (n == 2 || n == 3) {
+            return null;
+        }
+        Random random = new Random(seed);
+        int[] placement = new int[n];
+        int[] downDiags = new int[2 * n - 1];
+        int[] upDiags = new int[2 * n - 1];
+        while (true) {
+            for (int r = 0; r < n; r++) {
+                placement[r] = r;
+            }
+            Arrays.fill(downDiags, 0);
+            Arrays.fill(upDiags, 0);
+            // the columns not used yet are the ones in placement[row..n-1]:
+            long conflicts = 0;
+            for (int row = 0; row < n; row++) {
+                int pick = row + random.nextInt(n - row);
+                for (int tries = 0; tries < 8; tries++) {
+                    int candidate = row + random.nextInt(n - row);
+                    int col = placement[candidate];
+                    if (downDiags[row + col] == 0 && upDiags[row - col + n - 1] == 0) {
+                        pick = candidate;
+                        break;
+                    }
+                }
+                int col = placement[pick];
+                placement[pick] = placement[row];
+                placement[row] = col;
+                conflicts += downDiags[row + col]++ + upDiags[row - col + n - 1]++;
+            }
+            boolean progress = true;
+            while (conflicts > 0 && progress) {
+                progress = false;
+                for (int i = 0; i < n && conflicts > 0; i++) {
+                    if (downDiags[i + placement[i]] == 1 && upDiags[i - placement[i] + n - 1] == 1) {
+                        continue;
+                    }
+                    for (int tries = 0; tries < 64; tries++) {
+                        int j = random.nextInt(n);
+                        long change = swapQueens(i, j, placement, downDiags, upDiags, n);
+                        if (change < 0) {
+                            conflicts += change;
+                            progress = true;
+                            break;
+                        }
+                        swapQueens(i, j, placement, downDiags, upDiags, n);
+                    }
+                }
+            }
+            if (conflicts == 0) {
+                return placement;
+            }
+        }
+    }
+
+    /**
+     * Swaps the columns of the queens on rows i and j.
+     *
+     * @return the change in the number of pairs of queens sharing a diagonal.
+     */
+    private static long swapQueens(int i, int j, int[] placement, int[] downDiags, int[] upDiags, int n) {
+        long change = 0;
+        change -= --downDiags[i + placement[i]];
+        change -= --upDiags[i - placement[i] + n - 1];
+        change -= --downDiags[j + placement[j]];
+        change -= --upDiags[j - placement[j] + n - 1];
+        int tmp = placement[i];
+        placement[i] = placement[j];
+        placement[j] = tmp;
+        change += downDiags[i + placement[i]]++;
+        change += upDiags[i - placement[i] + n - 1]++;
+        change += downDiags[j + placement[j]]++;
+        change += upDiags[j - placement[j] + n - 1]++;
+        return change;
+    }
+
+    /**
+     * Checks a placement (placement[row] == column) in O(n): every column and every diagonal may hold one queen.
+     *
+     * @return true if no two queens attack each other
+     */
+    public boolean isValidSolution(int[] placement) {
+        int n = placement.length;
+        boolean[] cols = new boolean[n];
+        boolean[] downDiags = new boolean[2 * n - 1];
+        boolean[] upDiags = new boolean[2 * n - 1];
+        for (int row = 0; row < n; row++) {
+            int col = placement[row];
+            if (col < 0 || col >= n || cols[col] || downDiags[row + col] || upDiags[row - col + n - 1]) {
+                return false;
+            }
+            cols[col] = true;
+            downDiags[row + col] = true;
+            upDiags[row - col + n - 1] = true;
+        }
+        return true;
+    }
+
+    static void checkSize(int n) {
+        if (n < 1 || n > 63) {
+            throw new IllegalArgumentException("n must be between 1 and 63 (got " + n + ")");
+        }
+    }
+
+   
+    private void addEntry(Coordinate co) {
+        int[] placement = new int[this.n];
+        for (Coordinate c = co; c != null; c = c.prev) {
+            placement[c.row] = c.col;
         }
-        this.rList.add(newList);
+        this.rList.add(toBoard(placement));
     }
 
     
@@ -0,0 +1,216 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The NQueensWriter writes N-Queens solutions straight to an OutputStream or a channel (such as a FileChannel)
+ * through one reusable buffer, without making any Strings. It is a Consumer of placements, so it can be handed
+ * directly to NQueensSolver.forEachSolution(n, writer). A placement is an array where placement[row] == the column of
+ * the queen on that row.
+ *
+ * Formats:
+ *   TEXT   - one solution per line. When n <= 36 each row is one base-36 digit ("04752613"), otherwise the columns
+ *            are written in decimal separated by spaces.
+ *   BOARD  - the board drawn the same way as solveNQueens ("Q  " and ".  "), with a blank line after each board.
+ *   BINARY - a header (the int MAGIC and the int n), then one record per solution: the packed long from pack() when
+ *            n <= 16, one unsigned byte per row when n <= 256, or one int per row beyond that.
+ *
+ * @author Alex Meislich
+ */
+class NQueensWriter implements Consumer<int[]>, Closeable {
+    static final int MAGIC = 0x4E515331; // "NQS1"
+    private static final byte[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes();
+
+    enum Format { TEXT, BOARD, BINARY }
+
+    private final int n;
+    private final Format format;
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private long written;
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        try (NQueensWriter writer = new NQueensWriter(new FileOutputStream(FileDescriptor.out), n, Format.TEXT)) {
+            new NQueensSolver().forEachSolution(n, writer);
+        }
+    }
+
+    public NQueensWriter(OutputStream out, int n, Format format) throws IOException {
+        this(out, null, n, format);
+    }
+
+    public NQueensWriter(WritableByteChannel channel, int n, Format format) throws IOException {
+        this(null, channel, n, format);
+    }
+
+    private NQueensWriter(OutputStream out, WritableByteChannel channel, int n, Format format) throws IOException {
+        if (n < 1 || (format == Format.BOARD && 3 * n + 1 > this.buffer.capacity())) {
+            throw new IllegalArgumentException("Can't write boards of size " + n + " as " + format);
+        }
+        this.out = out;
+        this.channel = channel;
+        this.n = n;
+        this.format = format;
+        if (format == Format.BINARY) {
+            this.buffer.putInt(MAGIC).putInt(n);
+        }
+    }
+
+    /**
+     * Packs a placement with n <= 16 into a long, four bits per row (row 0 in the lowest bits).
+     */
+    static long pack(int[] placement) {
+        if (placement.length > 16) {
+            throw new IllegalArgumentException("Only boards up to 16 x 16 fit in a long");
+        }
+        long packed = 0;
+        for (int row = 0; row < placement.length; row++) {
+            packed |= (long) placement[row] << (4 * row);
+        }
+        return packed;
+    }
+
+    static int[] unpack(long packed, int n) {
+        int[] placement = new int[n];
+        for (int row = 0; row < n; row++) {
+            placement[row] = (int) (packed >>> (4 * row)) & 0xF;
+        }
+        return placement;
+    }
+
+    /**
+     * Draws a packed solution as the rows of a board, the same way solveNQueens does.
+     */
+    static List<String> render(long packed, int n) {
+        return NQueensSolver.toBoard(unpack(packed, n));
+    }
+
+    @Override
+    public void accept(int[] placement) {
+        try {
+            write(placement);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(int[] placement) throws IOException {
+        if (placement.length != this.n) {
+            throw new IllegalArgumentException("Expected a placement of size " + this.n);
+        }
+        switch (this.format) {
+            case TEXT:
+                writeText(placement);
+                break;
+            case BOARD:
+                for (int col : placement) {
+                    ensure(3 * this.n + 1);
+                    for (int j = 0; j < this.n; j++) {
+                        this.buffer.put(j == col ? (byte) 'Q' : (byte) '.').put((byte) ' ').put((byte) ' ');
+                    }
+                    this.buffer.put((byte) '\n');
+                }
+                ensure(1);
+                this.buffer.put((byte) '\n');
+                break;
+            case BINARY:
+                if (this.n <= 16) {
+                    ensure(Long.BYTES);
+                    this.buffer.putLong(pack(placement));
+                } else {
+                    for (int col : placement) {
+                        ensure(Integer.BYTES);
+                        if (this.n <= 256) {
+                            this.buffer.put((byte) col);
+                        } else {
+                            this.buffer.putInt(col);
+                        }
+                    }
+                }
+                break;
+        }
+        this.written++;
+    }
+
+    private void writeText(int[] placement) throws IOException {
+        if (this.n <= 36) {
+            ensure(this.n + 1);
+            for (int col : placement) {
+                this.buffer.put(DIGITS[col]);
+            }
+        } else {
+            for (int row = 0; row < placement.length; row++) {
+                ensure(12);
+                if (row > 0) {
+                    this.buffer.put((byte) ' ');
+                }
+                putDecimal(placement[row]);
+            }
+            ensure(1);
+        }
+        this.buffer.put((byte) '\n');
+    }
+
+    private void putDecimal(int value) {
+        int start = this.buffer.position();
+        do {
+            this.buffer.put(DIGITS[value % 10]);
+            value /= 10;
+        } while (value != 0);
+        // the digits went in backwards:
+        for (int i = start, j = this.buffer.position() - 1; i < j; i++, j--) {
+            byte tmp = this.buffer.get(i);
+            this.buffer.put(i, this.buffer.get(j));
+            this.buffer.put(j, tmp);
+        }
+    }
+
+    /**
+     * @return how many solutions have been written so far.
+     */
+    public long getWritten() {
+        return this.written;
+    }
+
+    /**
+     * Makes room in the buffer for the given number of bytes, flushing it if needed.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (this.buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        this.buffer.flip();
+        if (this.channel != null) {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } else {
+            this.out.write(this.buffer.array(), 0, this.buffer.limit());
+        }
+        this.buffer.clear();
+    }
+
+    public void flush() throws IOException {
+        drain();
+        if (this.out != null) {
+            this.out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (this.channel != null) {
+            this.channel.close();
+        } else {
+            this.out.close();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The ParallelNQueensSolver splits the N-Queens search by where the queens on the first two rows go. Every valid
+ * pair of first-two-row placements is its own fork-join task. Each task runs the bitboard search on its own
+ * local masks and counters (the search is NQueensSolver's), and the results are only merged once the tasks are done,
+ * so one instance can be used from any number of threads.
+ *
+ * Counting uses the same left-right mirror as NQueensSolver.countNQueens, so only prefixes whose first queen is on
+ * the left half (or in the middle column with the second queen on the left half) are searched.
+ *
+ * @author Alex Meislich
+ */
+class ParallelNQueensSolver {
+    private final ForkJoinPool pool;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        long start = System.currentTimeMillis();
+        System.out.println(new ParallelNQueensSolver().countNQueens(n) + "\n" + (System.currentTimeMillis() - start));
+    }
+
+    public ParallelNQueensSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelNQueensSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param n the size of the board (at most 63).
+     * @return the number of solutions
+     */
+    public long countNQueens(int n) {
+        NQueensSolver.checkSize(n);
+        if (n == 1) {
+            return 1;
+        }
+        List<Prefix> prefixes = new ArrayList<>();
+        for (int first = 0; first <= (n - 1) / 2; first++) {
+            boolean middle = n % 2 == 1 && first == n / 2;
+            for (int second = 0; second < (middle ? first : n); second++) {
+                addPrefix(prefixes, n, first, second, 2);
+            }
+        }
+        return this.pool.invoke(new RecursiveTask<Long>() {
+            @Override
+            protected Long compute() {
+                List<CountTask> tasks = new ArrayList<>();
+                for (Prefix prefix : prefixes) {
+                    tasks.add(new CountTask(n, prefix));
+                }
+                long count = 0;
+                for (CountTask task : ForkJoinTask.invokeAll(tasks)) {
+                    count += task.join();
+                }
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Finds every solution, in the same order as NQueensSolver.solveNQueens.
+     *
+     * @param n the size of the board (at most 63).
+     * @return every solution as an array where placement[row] == the column of the queen on that row
+     */
+    public List<int[]> solveNQueens(int n) {
+        NQueensSolver.checkSize(n);
+        if (n == 1) {
+            return new ArrayList<>(Collections.singletonList(new int[]{0}));
+        }
+        List<Prefix> prefixes = new ArrayList<>();
+        for (int first = 0; first < n; first++) {
+            for (int second = 0; second < n; second++) {
+                addPrefix(prefixes, n, first, second, 1);
+            }
+        }
+        return this.pool.invoke(new RecursiveTask<List<int[]>>() {
+            @Override
+            protected List<int[]> compute() {
+                List<SolveTask> tasks = new ArrayList<>();
+                for (Prefix prefix : prefixes) {
+                    tasks.add(new SolveTask(n, prefix));
+                }
+                List<int[]> solutions = new ArrayList<>();
+                for (SolveTask task : ForkJoinTask.invokeAll(tasks)) {
+                    solutions.addAll(task.join());
+                }
+                return solutions;
+            }
+        });
+    }
+
+    /**
+     * Adds the prefix with queens at (0, first) and (1, second) if those two queens don't attack each other.
+     */
+    private static void addPrefix(List<Prefix> prefixes, int n, int first, int second, int weight) {
+        if (Math.abs(first - second) <= 1) {
+            return;
+        }
+        long a = 1L << first;
+        long b = 1L << second;
+        prefixes.add(new Prefix(first, second, a | b, (a << 1 | b) << 1, (a >>> 1 | b) >>> 1, weight));
+    }
+
+    /**
+     * The queens on the first two rows and the board state they leave behind. A prefix that stands for its mirror
+     * image as well has a weight of 2.
+     */
+    private static class Prefix {
+        private final int first;
+        private final int second;
+        private final long cols;
+        private final long leftDiags;
+        private final long rightDiags;
+        private final int weight;
+
+        private Prefix(int first, int second, long cols, long leftDiags, long rightDiags, int weight) {
+            this.first = first;
+            this.second = second;
+            this.cols = cols;
+            this.leftDiags = leftDiags;
+            this.rightDiags = rightDiags;
+            this.weight = weight;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class CountTask extends RecursiveTask<Long> {
+        private final int n;
+        private final Prefix prefix;
+
+        private CountTask(int n, Prefix prefix) {
+            this.n = n;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected Long compute() {
+            return this.prefix.weight * NQueensSolver.countQueens(NQueensSolver.emptyBoard(this.n), 2,
+                    this.prefix.cols, this.prefix.leftDiags, this.prefix.rightDiags);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class SolveTask extends RecursiveTask<List<int[]>> {
+        private final int n;
+        private final Prefix prefix;
+
+        private SolveTask(int n, Prefix prefix) {
+            this.n = n;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            int[] placement = new int[this.n];
+            placement[0] = this.prefix.first;
+            placement[1] = this.prefix.second;
+            List<int[]> solutions = new ArrayList<>();
+            NQueensSolver.visitQueens(NQueensSolver.emptyBoard(this.n), 2, this.prefix.cols, this.prefix.leftDiags,
+                    this.prefix.rightDiags, placement, solution -> solutions.add(solution.clone()));
+            return solutions;
+        }
+    }
+}